@@ -0,0 +1,199 @@
+package com.zher.meow.widget;
+
+import android.util.Log;
+
+import org.json.JSONObject;
+
+/**
+ * JSON编解码性能对比
+ * 对比PetDataJsonCodec、org.json对象树、以及旧版indexOf逐字段解析三种方式的读写耗时
+ */
+public class JsonCodecBenchmark {
+    private static final String TAG = "JsonCodecBenchmark";
+
+    // 防止JIT把结果优化掉
+    private static volatile int sink;
+
+    /**
+     * 运行对比测试
+     * @param iterations 每种方式的读写次数
+     * @return JSON格式的结果，单位为纳秒/次
+     */
+    public static String run(int iterations) {
+        try {
+            iterations = Math.max(1, iterations);
+            PetData sample = createSample();
+            String json = PetDataJsonCodec.writePetData(sample);
+
+            // 预热
+            int warmup = Math.max(100, iterations / 10);
+            runCodecRead(json, warmup);
+            runOrgJsonRead(json, warmup);
+            runLegacyRead(json, warmup);
+            runCodecWrite(sample, warmup);
+            runOrgJsonWrite(sample, warmup);
+            runLegacyWrite(sample, warmup);
+
+            JSONObject result = new JSONObject();
+            result.put("iterations", iterations);
+            result.put("jsonLength", json.length());
+
+            JSONObject read = new JSONObject();
+            read.put("codecNs", runCodecRead(json, iterations));
+            read.put("orgJsonNs", runOrgJsonRead(json, iterations));
+            read.put("indexOfNs", runLegacyRead(json, iterations));
+            result.put("read", read);
+
+            JSONObject write = new JSONObject();
+            write.put("codecNs", runCodecWrite(sample, iterations));
+            write.put("orgJsonNs", runOrgJsonWrite(sample, iterations));
+            write.put("stringBuilderNs", runLegacyWrite(sample, iterations));
+            result.put("write", write);
+
+            Log.i(TAG, "JSON编解码对比: " + result);
+            return result.toString();
+
+        } catch (Exception e) {
+            Log.e(TAG, "JSON编解码对比失败: " + e.getMessage());
+            return "{\"error\":\"JSON编解码对比失败\"}";
+        }
+    }
+
+    private static long runCodecRead(String json, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += PetDataJsonCodec.readPetData(json).energy;
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long runOrgJsonRead(String json, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += PetData.fromJson(new JSONObject(json)).energy;
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long runLegacyRead(String json, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += legacyJsonToPetData(json).energy;
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long runCodecWrite(PetData data, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += PetDataJsonCodec.writePetData(data).length();
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long runOrgJsonWrite(PetData data, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += data.toJson().toString().length();
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static long runLegacyWrite(PetData data, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += legacyPetDataToJson(data).length();
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static PetData createSample() {
+        PetData data = new PetData();
+        data.petId = "pet_20240101_0001";
+        data.petName = "小橘\"咪咪\"";
+        data.prefabName = "Pet_CatBrown";
+        data.energy = 76;
+        data.satiety = 58;
+        data.isBored = true;
+        data.purchaseDate = "2024-01-01 12:00:00";
+        data.ageInDays = 42;
+        data.introduction = "一只喜欢晒太阳的猫\n最爱小鱼干";
+        data.lastUpdateTime = String.valueOf(System.currentTimeMillis());
+        return data;
+    }
+
+    // ========== 旧版实现（原WidgetDataProvider中的写法，仅作对比基准） ==========
+
+    private static String legacyPetDataToJson(PetData data) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"petId\":\"").append(legacyEscapeJson(data.petId)).append("\",");
+        json.append("\"petName\":\"").append(legacyEscapeJson(data.petName)).append("\",");
+        json.append("\"prefabName\":\"").append(legacyEscapeJson(data.prefabName)).append("\",");
+        json.append("\"energy\":").append(data.energy).append(",");
+        json.append("\"satiety\":").append(data.satiety).append(",");
+        json.append("\"isBored\":").append(data.isBored).append(",");
+        json.append("\"purchaseDate\":\"").append(legacyEscapeJson(data.purchaseDate)).append("\",");
+        json.append("\"ageInDays\":").append(data.ageInDays).append(",");
+        json.append("\"introduction\":\"").append(legacyEscapeJson(data.introduction)).append("\",");
+        json.append("\"lastUpdateTime\":\"").append(legacyEscapeJson(data.lastUpdateTime)).append("\"");
+        json.append("}");
+        return json.toString();
+    }
+
+    private static PetData legacyJsonToPetData(String json) {
+        PetData data = new PetData();
+        data.petId = legacyExtractString(json, "petId");
+        data.petName = legacyExtractString(json, "petName");
+        data.prefabName = legacyExtractString(json, "prefabName");
+        data.energy = legacyExtractInt(json, "energy");
+        data.satiety = legacyExtractInt(json, "satiety");
+        data.isBored = legacyExtractBoolean(json, "isBored");
+        data.purchaseDate = legacyExtractString(json, "purchaseDate");
+        data.ageInDays = legacyExtractInt(json, "ageInDays");
+        data.introduction = legacyExtractString(json, "introduction");
+        data.lastUpdateTime = legacyExtractString(json, "lastUpdateTime");
+        return data;
+    }
+
+    private static String legacyExtractString(String json, String key) {
+        String pattern = "\"" + key + "\":\"";
+        int start = json.indexOf(pattern);
+        if (start == -1) return "";
+        start += pattern.length();
+        int end = json.indexOf("\"", start);
+        if (end == -1) return "";
+        return json.substring(start, end);
+    }
+
+    private static int legacyExtractInt(String json, String key) {
+        String pattern = "\"" + key + "\":";
+        int start = json.indexOf(pattern);
+        if (start == -1) return 0;
+        start += pattern.length();
+        int end = json.indexOf(",", start);
+        if (end == -1) end = json.indexOf("}", start);
+        if (end == -1) return 0;
+        try {
+            return Integer.parseInt(json.substring(start, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean legacyExtractBoolean(String json, String key) {
+        String pattern = "\"" + key + "\":";
+        int start = json.indexOf(pattern);
+        if (start == -1) return false;
+        start += pattern.length();
+        int end = json.indexOf(",", start);
+        if (end == -1) end = json.indexOf("}", start);
+        if (end == -1) return false;
+        return json.substring(start, end).equals("true");
+    }
+
+    private static String legacyEscapeJson(String str) {
+        if (str == null) return "";
+        return str.replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,109 @@
+package com.zher.meow.widget;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * 批量离线计算性能对比
+ * 在1到10000只宠物的规模下，对比OfflineBatchCalculator的数组批量计算
+ * 和逐只调用OfflineCalculator（每只宠物分配一个PetData）的单只宠物耗时
+ */
+public class OfflineBatchBenchmark {
+    private static final String TAG = "OfflineBatchBenchmark";
+
+    private static final int[] PET_COUNTS = {1, 10, 100, 1000, 10000};
+
+    // 防止JIT把结果优化掉
+    private static volatile long sink;
+
+    /**
+     * 运行对比测试
+     * @param iterations 每个规模下计算的宠物总次数（宠物数超过它时只算一轮）
+     * @return JSON格式的结果，单位为纳秒/只
+     */
+    public static String run(int iterations) {
+        try {
+            iterations = Math.max(1, iterations);
+            long now = System.currentTimeMillis();
+
+            JSONObject result = new JSONObject();
+            result.put("iterations", iterations);
+            JSONArray sizes = new JSONArray();
+
+            for (int count : PET_COUNTS) {
+                OfflineDataManager.OfflineBaseData[] pets = createPets(count, now);
+                OfflineBatchCalculator batch = new OfflineBatchCalculator();
+                for (OfflineDataManager.OfflineBaseData pet : pets) {
+                    batch.put(pet);
+                }
+                int rounds = Math.max(1, iterations / count);
+
+                // 预热
+                int warmup = Math.max(1, rounds / 10);
+                runBatch(batch, now, warmup);
+                runSingle(pets, now, warmup);
+
+                JSONObject size = new JSONObject();
+                size.put("pets", count);
+                size.put("rounds", rounds);
+                size.put("batchNs", runBatch(batch, now, rounds) / count);
+                size.put("singleNs", runSingle(pets, now, rounds) / count);
+                sizes.put(size);
+            }
+            result.put("sizes", sizes);
+
+            Log.i(TAG, "批量离线计算对比: " + result);
+            return result.toString();
+
+        } catch (Exception e) {
+            Log.e(TAG, "批量离线计算对比失败: " + e.getMessage());
+            return "{\"error\":\"批量离线计算对比失败\"}";
+        }
+    }
+
+    /**
+     * @return 每轮耗时（纳秒）
+     */
+    private static long runBatch(OfflineBatchCalculator batch, long now, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            sink += batch.update(now + r * 1000L);
+            sink += batch.getEnergy(r % batch.size());
+        }
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    private static long runSingle(OfflineDataManager.OfflineBaseData[] pets, long now, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            long time = now + r * 1000L;
+            for (OfflineDataManager.OfflineBaseData pet : pets) {
+                sink += OfflineCalculator.calculateCurrentStats(pet, time).energy;
+                sink += OfflineCalculator.getNextChangeTime(pet, time);
+            }
+        }
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    /**
+     * 生成基准时间和数值各不相同的宠物，离线0到3天
+     */
+    private static OfflineDataManager.OfflineBaseData[] createPets(int count, long now) {
+        OfflineDataManager.OfflineBaseData[] pets = new OfflineDataManager.OfflineBaseData[count];
+        for (int i = 0; i < count; i++) {
+            OfflineDataManager.OfflineBaseData pet = new OfflineDataManager.OfflineBaseData();
+            pet.petId = "pet_" + i;
+            pet.petName = "宠物" + i;
+            pet.prefabName = (i & 1) == 0 ? "Pet_CatBrown" : "Pet_CatGrey";
+            pet.baseEnergy = 40 + (i * 7) % 61;
+            pet.baseSatiety = 30 + (i * 13) % 71;
+            pet.baseIsBored = (i % 3) == 0;
+            pet.baseTimestamp = now - (i * 7919L) % (3 * 24 * 60 * 60 * 1000L);
+            pet.lastCalculationTime = pet.baseTimestamp;
+            pets[i] = pet;
+        }
+        return pets;
+    }
+}
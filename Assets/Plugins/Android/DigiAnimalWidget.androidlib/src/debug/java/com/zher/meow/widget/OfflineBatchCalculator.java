@@ -0,0 +1,222 @@
+package com.zher.meow.widget;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 批量离线计算器
+ * 多只宠物的基准数据按字段存放在并行的基本类型数组中（精力、饱食、基准时间、标志位），
+ * update()在一个循环里算出所有宠物的当前数值和下一次变化时间，结果写回数组，不分配对象。
+ * 计算规则与OfflineCalculator的闭式计算一致；规则中有睡眠恢复或再次无聊时，
+ * 对应的宠物改用OfflineSimulator逐事件模拟（这部分会分配结果对象）。
+ * 小组件只显示一只宠物，目前只用于性能对比（OfflineBatchBenchmark），只放在debug构建中
+ */
+public class OfflineBatchCalculator {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // 标志位
+    private static final byte FLAG_BASE_BORED = 1;
+    private static final byte FLAG_BORED = 2;
+
+    private int size = 0;
+    // petId -> 下标
+    private final HashMap<String, Integer> indexById = new HashMap<>();
+
+    // 基准数据
+    private String[] petIds = new String[INITIAL_CAPACITY];
+    private String[] prefabNames = new String[INITIAL_CAPACITY];
+    private int[] baseEnergy = new int[INITIAL_CAPACITY];
+    private int[] baseSatiety = new int[INITIAL_CAPACITY];
+    private long[] baseTimestamp = new long[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+
+    // 按当前规则解析出的每只宠物的规则，规则替换后重新解析
+    private DecayRules.Profile[] profiles = new DecayRules.Profile[INITIAL_CAPACITY];
+    private DecayRules resolvedRules;
+
+    // 计算结果
+    private int[] energy = new int[INITIAL_CAPACITY];
+    private int[] satiety = new int[INITIAL_CAPACITY];
+    private long[] nextChangeTime = new long[INITIAL_CAPACITY];
+
+    // 复用的单只宠物基准数据，只在逐事件模拟时使用
+    private final OfflineDataManager.OfflineBaseData simulationBase = new OfflineDataManager.OfflineBaseData();
+
+    /**
+     * 添加或替换一只宠物的基准数据
+     * @return 宠物在数组中的下标
+     */
+    public int put(OfflineDataManager.OfflineBaseData baseData) {
+        int index = indexOf(baseData.petId);
+        if (index < 0) {
+            ensureCapacity(size + 1);
+            index = size++;
+            indexById.put(baseData.petId, index);
+        }
+        petIds[index] = baseData.petId;
+        prefabNames[index] = baseData.prefabName;
+        baseEnergy[index] = baseData.baseEnergy;
+        baseSatiety[index] = baseData.baseSatiety;
+        baseTimestamp[index] = baseData.baseTimestamp;
+        flags[index] = baseData.baseIsBored ? FLAG_BASE_BORED : 0;
+        profiles[index] = resolvedRules != null ? resolvedRules.forPet(baseData.prefabName) : null;
+
+        energy[index] = baseData.baseEnergy;
+        satiety[index] = baseData.baseSatiety;
+        nextChangeTime[index] = -1;
+        return index;
+    }
+
+    /**
+     * 移除一只宠物，最后一只宠物移到它的位置
+     */
+    public boolean remove(String petId) {
+        int index = indexOf(petId);
+        if (index < 0) {
+            return false;
+        }
+        indexById.remove(petId);
+        int last = --size;
+        if (index != last) {
+            indexById.put(petIds[last], index);
+        }
+        petIds[index] = petIds[last];
+        prefabNames[index] = prefabNames[last];
+        baseEnergy[index] = baseEnergy[last];
+        baseSatiety[index] = baseSatiety[last];
+        baseTimestamp[index] = baseTimestamp[last];
+        flags[index] = flags[last];
+        profiles[index] = profiles[last];
+        energy[index] = energy[last];
+        satiety[index] = satiety[last];
+        nextChangeTime[index] = nextChangeTime[last];
+        petIds[last] = null;
+        prefabNames[last] = null;
+        profiles[last] = null;
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            petIds[i] = null;
+            prefabNames[i] = null;
+            profiles[i] = null;
+        }
+        size = 0;
+        indexById.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int indexOf(String petId) {
+        Integer index = indexById.get(petId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 计算所有宠物在currentTime的数值
+     * @return 所有宠物中最早的下一次变化时间，都不会再变化时返回-1
+     */
+    public long update(long currentTime) {
+        DecayRules rules = DecayRules.current();
+        if (rules != resolvedRules) {
+            for (int i = 0; i < size; i++) {
+                profiles[i] = rules.forPet(prefabNames[i]);
+            }
+            resolvedRules = rules;
+        }
+
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            DecayRules.Profile profile = profiles[i];
+            if (profile.needsSimulation()) {
+                simulate(i, currentTime);
+            } else {
+                calculate(i, profile, currentTime);
+            }
+            long next = nextChangeTime[i];
+            if (next >= 0 && next < earliest) {
+                earliest = next;
+            }
+        }
+        return earliest == Long.MAX_VALUE ? -1 : earliest;
+    }
+
+    public String getPetId(int index) {
+        return petIds[index];
+    }
+
+    public int getEnergy(int index) {
+        return energy[index];
+    }
+
+    public int getSatiety(int index) {
+        return satiety[index];
+    }
+
+    public boolean isBored(int index) {
+        return (flags[index] & FLAG_BORED) != 0;
+    }
+
+    /**
+     * @return 毫秒时间戳，之后不会再变化时返回-1
+     */
+    public long getNextChangeTime(int index) {
+        return nextChangeTime[index];
+    }
+
+    /**
+     * 闭式计算，与OfflineCalculator.calculateCurrentStats和getNextChangeTime一致
+     */
+    private void calculate(int i, DecayRules.Profile profile, long currentTime) {
+        long base = baseTimestamp[i];
+        long elapsedSeconds = Math.max(0, (currentTime - base) / 1000);
+        long energySeconds = profile.energyElapsedMillis(base, currentTime) / 1000;
+
+        energy[i] = profile.energy.valueAfter(baseEnergy[i], energySeconds);
+        satiety[i] = profile.satiety.valueAfter(baseSatiety[i], elapsedSeconds);
+        boolean baseBored = (flags[i] & FLAG_BASE_BORED) != 0;
+        boolean bored = baseBored && elapsedSeconds < profile.boredResetSeconds;
+        flags[i] = (byte) ((baseBored ? FLAG_BASE_BORED : 0) | (bored ? FLAG_BORED : 0));
+
+        nextChangeTime[i] = OfflineCalculator.nextChangeTime(profile, baseEnergy[i], baseSatiety[i], bored, base,
+                elapsedSeconds, energySeconds);
+    }
+
+    /**
+     * 逐事件模拟（规则有睡眠恢复或再次无聊时）
+     */
+    private void simulate(int i, long currentTime) {
+        simulationBase.petId = petIds[i];
+        simulationBase.prefabName = prefabNames[i];
+        simulationBase.baseEnergy = baseEnergy[i];
+        simulationBase.baseSatiety = baseSatiety[i];
+        simulationBase.baseIsBored = (flags[i] & FLAG_BASE_BORED) != 0;
+        simulationBase.baseTimestamp = baseTimestamp[i];
+
+        OfflineSimulator.Result result = OfflineSimulator.simulate(simulationBase, 0, 1, currentTime);
+        energy[i] = result.energy;
+        satiety[i] = result.satiety;
+        flags[i] = (byte) ((flags[i] & FLAG_BASE_BORED) | (result.isBored ? FLAG_BORED : 0));
+        nextChangeTime[i] = result.nextChangeTime;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= petIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, petIds.length * 2);
+        petIds = Arrays.copyOf(petIds, newCapacity);
+        prefabNames = Arrays.copyOf(prefabNames, newCapacity);
+        baseEnergy = Arrays.copyOf(baseEnergy, newCapacity);
+        baseSatiety = Arrays.copyOf(baseSatiety, newCapacity);
+        baseTimestamp = Arrays.copyOf(baseTimestamp, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        profiles = Arrays.copyOf(profiles, newCapacity);
+        energy = Arrays.copyOf(energy, newCapacity);
+        satiety = Arrays.copyOf(satiety, newCapacity);
+        nextChangeTime = Arrays.copyOf(nextChangeTime, newCapacity);
+    }
+}
@@ -0,0 +1,182 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.InputStream;
+
+/**
+ * 调色板图集解码性能对比
+ * 对所有宠物帧，对比BitmapFactory.decodeResource解码当前屏幕密度下放大好的PNG，
+ * 和PetAtlas从调色板图集解码、切出帧再整数倍放大到同样尺寸的耗时，同时对比两者的数据大小
+ */
+public class PetAtlasBenchmark {
+    private static final String TAG = "PetAtlasBenchmark";
+
+    // 防止JIT把结果优化掉
+    private static volatile long sink;
+
+    /**
+     * 运行对比测试
+     * @param iterations 每种方式处理全部帧的轮数
+     * @return JSON格式的结果，耗时单位为纳秒/帧（atlasDecodeNs为解码全部图集的耗时按帧平均）
+     */
+    public static String run(Context context, int iterations) {
+        try {
+            iterations = Math.max(1, iterations);
+            Resources resources = context.getResources();
+            PetAtlas atlas = PetAtlas.getInstance(context);
+
+            int frameCount = PetFrameIndex.FRAME_COUNT;
+            int[] scales = new int[frameCount + 1];
+            int maxPixels = 0;
+            int maxScaledPixels = 0;
+            long pngBytes = 0;
+            long pngBitmapBytes = 0;
+            for (int frame = 1; frame <= frameCount; frame++) {
+                int width = atlas.getFrameWidth(frame);
+                int height = atlas.getFrameHeight(frame);
+                Bitmap bitmap = decodePng(resources, frame);
+                if (width == 0 || bitmap == null) {
+                    return "{\"error\":\"宠物帧资源不完整\"}";
+                }
+                // 放大到与当前屏幕密度下的PNG相同的尺寸
+                scales[frame] = Math.max(1, bitmap.getWidth() / width);
+                maxPixels = Math.max(maxPixels, width * height);
+                maxScaledPixels = Math.max(maxScaledPixels, width * height * scales[frame] * scales[frame]);
+                pngBytes += readResourceBytes(resources, PetFrameIndex.SCALED_RESOURCES[frame]);
+                pngBitmapBytes += bitmap.getByteCount();
+                bitmap.recycle();
+            }
+            long atlasBytes = 0;
+            for (int resourceId : PetFrameIndex.ATLASES) {
+                atlasBytes += readResourceBytes(resources, resourceId);
+            }
+            int[] pixels = new int[maxPixels];
+            int[] scaled = new int[maxScaledPixels];
+
+            // 预热
+            int warmup = Math.max(1, iterations / 10);
+            runPng(resources, warmup);
+            runAtlasDecode(atlas, warmup);
+            runAtlasScale(atlas, scales, pixels, scaled, warmup);
+
+            int decodes = iterations * frameCount;
+            JSONObject result = new JSONObject();
+            result.put("iterations", iterations);
+            result.put("frames", frameCount);
+            result.put("scale", scales[1]);
+            result.put("pngDecodeNs", runPng(resources, iterations) / decodes);
+            result.put("atlasDecodeNs", runAtlasDecode(atlas, iterations) / decodes);
+            result.put("atlasScaledNs", runAtlasScale(atlas, scales, pixels, scaled, iterations) / decodes);
+            result.put("atlasBitmapNs", runAtlasBitmap(atlas, scales, iterations) / decodes);
+            result.put("pngBytes", pngBytes);
+            result.put("atlasBytes", atlasBytes);
+            result.put("pngBitmapBytes", pngBitmapBytes / frameCount);
+            result.put("atlasDecodedBytes", atlas.getDecodedBytes());
+
+            Log.i(TAG, "调色板图集解码对比: " + result);
+            return result.toString();
+
+        } catch (Exception e) {
+            Log.e(TAG, "调色板图集解码对比失败: " + e.getMessage());
+            return "{\"error\":\"调色板图集解码对比失败\"}";
+        }
+    }
+
+    /**
+     * @return 总耗时（纳秒）
+     */
+    private static long runPng(Resources resources, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int frame = 1; frame <= PetFrameIndex.FRAME_COUNT; frame++) {
+                Bitmap bitmap = decodePng(resources, frame);
+                if (bitmap != null) {
+                    sink += bitmap.getWidth();
+                    bitmap.recycle();
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 每轮释放后重新解码全部图集（每种宠物第一帧触发解码）
+     */
+    private static long runAtlasDecode(PetAtlas atlas, int rounds) {
+        int[] pixel = new int[1];
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            atlas.release();
+            for (int petType = 0; petType < PetFrameIndex.PET_TYPE_COUNT; petType++) {
+                int frame = PetFrameIndex.FRAMES[petType][0][0];
+                int[] buffer = new int[atlas.getFrameWidth(frame) * atlas.getFrameHeight(frame)];
+                atlas.copyFrame(frame, buffer);
+                pixel[0] += buffer[0];
+            }
+        }
+        sink += pixel[0];
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 从已解码的图集切出帧并放大到复用的缓冲
+     */
+    private static long runAtlasScale(PetAtlas atlas, int[] scales, int[] pixels, int[] scaled, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int frame = 1; frame <= PetFrameIndex.FRAME_COUNT; frame++) {
+                int width = atlas.getFrameWidth(frame);
+                atlas.copyFrame(frame, pixels);
+                PetAtlas.upscale(pixels, 0, width, width, atlas.getFrameHeight(frame), scales[frame], scaled);
+                sink += scaled[0];
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 切出、放大并生成位图（与decodeResource的产出对等）
+     */
+    private static long runAtlasBitmap(PetAtlas atlas, int[] scales, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int frame = 1; frame <= PetFrameIndex.FRAME_COUNT; frame++) {
+                Bitmap bitmap = atlas.createScaledFrame(frame, scales[frame]);
+                if (bitmap != null) {
+                    sink += bitmap.getWidth();
+                    bitmap.recycle();
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Bitmap decodePng(Resources resources, int frame) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false; // 按资源原尺寸解码，不再缩放
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        return BitmapFactory.decodeResource(resources, PetFrameIndex.SCALED_RESOURCES[frame], options);
+    }
+
+    private static long readResourceBytes(Resources resources, int resourceId) throws Exception {
+        InputStream in = resources.openRawResource(resourceId);
+        try {
+            byte[] buffer = new byte[4096];
+            long total = 0;
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                total += count;
+            }
+            return total;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+
+/**
+ * 性能对比入口（debug构建）
+ * 对比测试类只放在src/debug中，release构建使用src/release中的同名类，不打包测试代码
+ */
+final class WidgetBenchmarks {
+
+    private WidgetBenchmarks() {
+    }
+
+    static String runJsonCodec(int iterations) {
+        return JsonCodecBenchmark.run(iterations);
+    }
+
+    static String runOfflineBatch(int iterations) {
+        return OfflineBatchBenchmark.run(iterations);
+    }
+
+    static String runPetAtlas(Context context, int iterations) {
+        return PetAtlasBenchmark.run(context, iterations);
+    }
+}
@@ -5,7 +5,6 @@ import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Build;
 import android.util.Log;
 
@@ -20,8 +19,6 @@ import org.json.JSONObject;
 public class AndroidWidgetPlugin {
     
     private static final String TAG = "AndroidWidgetPlugin";
-    private static final String PREFS_NAME = "DigiAnimalWidgetData";
-    private static final String KEY_WIDGET_DATA = "widget_data";
     
     private Context context;
     
@@ -51,16 +48,13 @@ public class AndroidWidgetPlugin {
                           ", 精力: " + petData.energy + 
                           ", 饱食: " + petData.satiety + 
                           ", 年龄: " + petData.ageInDays + "天");
-                
-                // 使用新的数据提供者处理游戏数据更新
-                WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
-                dataProvider.handleGameDataUpdate(petData);
             } else {
                 Log.w(TAG, "小组件数据中没有宠物数据");
             }
             
-            // 保存数据到SharedPreferences (保留兼容性)
-            saveWidgetData(jsonData);
+            // 小组件数据、游戏数据和离线基准一次写入状态存储
+            WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
+            dataProvider.handleWidgetDataUpdate(widgetData);
             
             // 刷新所有小组件
             refreshAllWidgets();
@@ -109,6 +103,31 @@ public class AndroidWidgetPlugin {
         }
     }
     
+    /**
+     * 设置动画播放方式
+     * true: 帧序列一次性交给启动器的ViewFlipper本地播放（默认）
+     * false: 逐帧更新小组件（兼容不支持ViewFlipper的启动器）
+     */
+    public void setLauncherAnimationEnabled(boolean enabled) {
+        Log.d(TAG, "设置启动器本地动画: " + enabled);
+        
+        try {
+            DigiAnimalWidgetProvider.setLauncherAnimationEnabled(context, enabled);
+        } catch (Exception e) {
+            Log.e(TAG, "设置动画播放方式失败", e);
+        }
+    }
+    
+    /**
+     * 设置刷新合并窗口（毫秒）
+     * 窗口内到达的刷新请求合并成一次渲染，0表示不等待；只在当前进程内有效
+     */
+    public void setUpdateCoalesceWindow(int millis) {
+        Log.d(TAG, "设置刷新合并窗口: " + millis + "ms");
+        
+        WidgetUpdateCoalescer.getInstance().setWindowMillis(millis);
+    }
+    
     /**
      * 刷新所有小组件
      */
@@ -125,12 +144,8 @@ public class AndroidWidgetPlugin {
                 return;
             }
             
-            // 触发小组件更新
-            Intent intent = new Intent(context, DigiAnimalWidgetProvider.class);
-            intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
-            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, widgetIds);
-            
-            context.sendBroadcast(intent);
+            // 交给更新服务在渲染线程上刷新，刷新完成前服务保持进程存活
+            WidgetUpdateService.requestRefresh(context);
             
             Log.i(TAG, "已刷新 " + widgetIds.length + " 个小组件");
             
@@ -178,12 +193,226 @@ public class AndroidWidgetPlugin {
         }
     }
     
+    /**
+     * 获取小组件渲染统计信息（用于性能调试）
+     */
+    public String getRenderStats() {
+        try {
+            JSONObject stats = new JSONObject();
+            
+            JSONObject fontStats = new JSONObject();
+            fontStats.put("fontLoads", WidgetFontCache.getFontLoadCount());
+            fontStats.put("fontLoadFailures", WidgetFontCache.getFontLoadFailureCount());
+            fontStats.put("paintsCreated", WidgetFontCache.getPaintCreateCount());
+            fontStats.put("paintHits", WidgetFontCache.getPaintHitCount());
+            stats.put("fontCache", fontStats);
+            
+            PetFrameCache frameCache = PetFrameCache.getInstance(context);
+            JSONObject frameStats = new JSONObject();
+            frameStats.put("hits", frameCache.getHitCount());
+            frameStats.put("misses", frameCache.getMissCount());
+            frameStats.put("evictions", frameCache.getEvictionCount());
+            frameStats.put("sizeBytes", frameCache.getSizeBytes());
+            frameStats.put("maxSizeBytes", frameCache.getMaxSizeBytes());
+            PetAtlas atlas = PetAtlas.getInstance(context);
+            frameStats.put("atlasDecodes", atlas.getAtlasDecodeCount());
+            frameStats.put("frameSlices", atlas.getFrameSliceCount());
+            frameStats.put("atlasDecodedBytes", atlas.getDecodedBytes());
+            frameStats.put("prescaledFrames", DigiAnimalWidgetProvider.getPrescaledFrameCount());
+            frameStats.put("runtimeScaledFrames", DigiAnimalWidgetProvider.getRuntimeScaledFrameCount());
+            stats.put("frameCache", frameStats);
+            
+            WidgetAnimationScheduler scheduler = WidgetAnimationScheduler.getInstance();
+            JSONObject animationStats = new JSONObject();
+            animationStats.put("renderedFrames", scheduler.getRenderedFrames());
+            animationStats.put("coalescedFrames", scheduler.getCoalescedFrames());
+            animationStats.put("droppedFrames", scheduler.getDroppedFrames());
+            animationStats.put("ticks", scheduler.getTickCount());
+            animationStats.put("activeAnimations", scheduler.getActiveCount());
+            stats.put("animation", animationStats);
+            
+            WidgetRenderFingerprints fingerprints = WidgetRenderFingerprints.getInstance();
+            JSONObject renderStats = new JSONObject();
+            renderStats.put("fullUpdates", fingerprints.getRenderCount());
+            renderStats.put("skippedUpdates", fingerprints.getSkippedCount());
+            renderStats.put("renderPasses", DigiAnimalWidgetProvider.getRenderPassCount());
+            renderStats.put("textBitmaps", DigiAnimalWidgetProvider.getTextBitmapCount());
+            renderStats.put("prefabParses", PetTypeRegistry.getParseCount());
+            stats.put("renderDiff", renderStats);
+            
+            WidgetRenderThread renderThread = WidgetRenderThread.getInstance();
+            JSONObject threadStats = new JSONObject();
+            threadStats.put("submitted", renderThread.getSubmittedCount());
+            threadStats.put("coalesced", renderThread.getCoalescedCount());
+            threadStats.put("executed", renderThread.getExecutedCount());
+            threadStats.put("pending", renderThread.getPendingCount());
+            stats.put("renderThread", threadStats);
+            
+            WidgetUpdateCoalescer coalescer = WidgetUpdateCoalescer.getInstance();
+            JSONObject coalescerStats = new JSONObject();
+            coalescerStats.put("windowMillis", coalescer.getWindowMillis());
+            coalescerStats.put("requests", coalescer.getRequestCount());
+            coalescerStats.put("flushes", coalescer.getFlushCount());
+            coalescerStats.put("renderedWidgets", coalescer.getRenderedWidgetCount());
+            coalescerStats.put("ratio", coalescer.getCoalescingRatio());
+            stats.put("updateCoalescer", coalescerStats);
+            
+            WidgetStateStore store = WidgetStateStore.getInstance(context);
+            JSONObject storeStats = new JSONObject();
+            storeStats.put("persistent", store.isPersistent());
+            storeStats.put("commits", store.getCommitCount());
+            storeStats.put("skippedCommits", store.getSkippedCommitCount());
+            storeStats.put("bytesWritten", store.getTotalBytesWritten());
+            storeStats.put("lastCommitBytes", store.getLastCommitBytes());
+            storeStats.put("fullSlotBytes", store.getFullSlotBytes());
+            stats.put("store", storeStats);
+            
+            JSONObject schedulerStats = new JSONObject();
+            schedulerStats.put("nextChangeTime", StatChangeScheduler.getScheduledTime());
+            schedulerStats.put("alarmsSet", StatChangeScheduler.getScheduleCount());
+            schedulerStats.put("alarmsSkipped", StatChangeScheduler.getSkippedCount());
+            stats.put("statScheduler", schedulerStats);
+            
+            DecayRules rules = DecayRules.current();
+            JSONObject rulesStats = new JSONObject();
+            rulesStats.put("source", rules.getSource());
+            rulesStats.put("petProfiles", rules.getPetProfileCount());
+            stats.put("decayRules", rulesStats);
+            
+            JSONObject simulatorStats = new JSONObject();
+            simulatorStats.put("lastEvents", OfflineSimulator.getLastEventCount());
+            simulatorStats.put("lastMicros", OfflineSimulator.getLastElapsedNanos() / 1000);
+            stats.put("offlineSimulator", simulatorStats);
+            
+            return stats.toString();
+            
+        } catch (Exception e) {
+            Log.e(TAG, "获取渲染统计失败", e);
+            return "{\"error\":\"获取渲染统计失败\"}";
+        }
+    }
+    
+    /**
+     * 更新离线数值衰减规则
+     * 由Unity调用，传入规则JSON（格式见DecayRules），传入空字符串恢复随包规则
+     */
+    public boolean updateDecayRules(String rulesJson) {
+        Log.d(TAG, "更新衰减规则");
+        
+        if (!DecayRules.update(context, rulesJson)) {
+            return false;
+        }
+        
+        // 按新规则重新计算当前数值并刷新
+        WidgetDataProvider.getInstance(context).refreshSnapshot();
+        refreshAllWidgets();
+        
+        Log.i(TAG, "衰减规则已更新");
+        return true;
+    }
+    
+    /**
+     * 获取离线数值的预测时间点
+     * 由Unity调用，用于提前安排通知等；时间均为毫秒时间戳，-1表示不会发生。
+     * 规则中有睡眠恢复或再次无聊时按小组件同样的事件模拟计算（simulated为true），
+     * 最多预测到基准时间之后OfflineSimulator.PREDICTION_HORIZON_MILLIS，更晚的也返回-1
+     */
+    public String getStatPredictions() {
+        try {
+            WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
+            OfflineDataManager.OfflineBaseData baseData = dataProvider.getValidOfflineBaseData();
+            JSONObject result = new JSONObject();
+            if (baseData == null) {
+                result.put("available", false);
+                return result.toString();
+            }
+            
+            result.put("available", true);
+            result.put("baseTimestamp", baseData.baseTimestamp);
+            if (DecayRules.current().forPet(baseData.prefabName).needsSimulation()) {
+                OfflineSimulator.Predictions predictions = OfflineSimulator.predict(baseData,
+                        new int[] {OfflineCalculator.SLEEPY_THRESHOLD, 0},
+                        new int[] {OfflineCalculator.HUNGRY_THRESHOLD, 0});
+                result.put("simulated", true);
+                result.put("sleepyAt", predictions.energyReachTimes[0]);
+                result.put("hungryAt", predictions.satietyReachTimes[0]);
+                result.put("energyEmptyAt", predictions.energyReachTimes[1]);
+                result.put("satietyEmptyAt", predictions.satietyReachTimes[1]);
+                result.put("boredResetAt", predictions.boredResetTime);
+            } else {
+                result.put("simulated", false);
+                result.put("sleepyAt", OfflineCalculator.getSleepyTime(baseData));
+                result.put("hungryAt", OfflineCalculator.getHungryTime(baseData));
+                result.put("energyEmptyAt", OfflineCalculator.getEnergyReachTime(baseData, 0));
+                result.put("satietyEmptyAt", OfflineCalculator.getSatietyReachTime(baseData, 0));
+                result.put("boredResetAt", OfflineCalculator.getBoredResetTime(baseData));
+            }
+            // 与小组件的刷新调度使用同一个结果
+            result.put("nextChangeAt", dataProvider.getNextStatChangeTime(System.currentTimeMillis()));
+            return result.toString();
+            
+        } catch (Exception e) {
+            Log.e(TAG, "获取数值预测失败", e);
+            return "{\"error\":\"获取数值预测失败\"}";
+        }
+    }
+    
+    /**
+     * 预测某项数值降到threshold及以下的时间（规则需要模拟时与getStatPredictions一样按事件模拟）
+     * @param statName "energy" 或 "satiety"
+     * @return 毫秒时间戳，没有离线数据或不会发生时返回-1
+     */
+    public long predictStatThresholdTime(String statName, int threshold) {
+        OfflineDataManager.OfflineBaseData baseData =
+                WidgetDataProvider.getInstance(context).getValidOfflineBaseData();
+        boolean isEnergy = "energy".equals(statName);
+        if (!isEnergy && !"satiety".equals(statName)) {
+            Log.w(TAG, "未知的数值类型: " + statName);
+            return -1;
+        }
+        if (baseData != null && DecayRules.current().forPet(baseData.prefabName).needsSimulation()) {
+            int[] thresholds = new int[] {threshold};
+            if (isEnergy) {
+                return OfflineSimulator.predict(baseData, thresholds, new int[0]).energyReachTimes[0];
+            }
+            return OfflineSimulator.predict(baseData, new int[0], thresholds).satietyReachTimes[0];
+        }
+        if (isEnergy) {
+            return OfflineCalculator.getEnergyReachTime(baseData, threshold);
+        }
+        return OfflineCalculator.getSatietyReachTime(baseData, threshold);
+    }
+    
+    /**
+     * 运行JSON编解码性能对比（用于性能调试，只有debug构建包含，release构建返回错误）
+     */
+    public String runJsonCodecBenchmark(int iterations) {
+        Log.d(TAG, "运行JSON编解码性能对比: " + iterations + "次");
+        return WidgetBenchmarks.runJsonCodec(iterations);
+    }
+    
+    /**
+     * 运行批量离线计算性能对比（用于性能调试，只有debug构建包含，release构建返回错误）
+     */
+    public String runOfflineBatchBenchmark(int iterations) {
+        Log.d(TAG, "运行批量离线计算性能对比: " + iterations + "次");
+        return WidgetBenchmarks.runOfflineBatch(iterations);
+    }
+    
+    /**
+     * 运行调色板图集解码性能对比（用于性能调试，只有debug构建包含，release构建返回错误）
+     */
+    public String runPetAtlasBenchmark(int iterations) {
+        Log.d(TAG, "运行调色板图集解码性能对比: " + iterations + "次");
+        return WidgetBenchmarks.runPetAtlas(context, iterations);
+    }
+    
     /**
      * 获取当前小组件数据
      */
     public String getCurrentWidgetData() {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String data = prefs.getString(KEY_WIDGET_DATA, "{}");
+        WidgetData widgetData = WidgetStateStore.getInstance(context).loadWidgetData();
+        String data = widgetData != null ? widgetData.toJson() : "{}";
         Log.d(TAG, "当前小组件数据: " + data);
         return data;
     }
@@ -194,10 +423,7 @@ public class AndroidWidgetPlugin {
     public void clearWidgetData() {
         Log.d(TAG, "清理小组件数据");
         
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.clear();
-        editor.apply();
+        WidgetStateStore.getInstance(context).begin().clearWidgetData().commit();
         
         // 刷新小组件显示默认数据
         refreshAllWidgets();
@@ -205,18 +431,6 @@ public class AndroidWidgetPlugin {
         Log.i(TAG, "小组件数据已清理");
     }
     
-    /**
-     * 保存小组件数据到SharedPreferences
-     */
-    private void saveWidgetData(String jsonData) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(KEY_WIDGET_DATA, jsonData);
-        editor.apply();
-        
-        Log.d(TAG, "数据已保存到SharedPreferences");
-    }
-    
     /**
      * 测试动画播放
      */
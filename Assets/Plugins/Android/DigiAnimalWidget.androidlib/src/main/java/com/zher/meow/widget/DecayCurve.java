@@ -0,0 +1,134 @@
+package com.zher.meow.widget;
+
+/**
+ * 编译后的数值衰减曲线
+ * 把"每降1点需要多少秒"的规则预先累加成查找表：timeAtValue[v]是从最大值降到v所需的秒数，
+ * valueAtBucket按固定时间分桶记录当时的数值。求值只做数组查找，不分配对象，耗时与经过时间无关
+ */
+public final class DecayCurve {
+    public static final int MAX_VALUE = 1000;
+
+    // 反查表最多的分桶数，超过时加大桶宽
+    private static final int MAX_BUCKETS = 16384;
+
+    private final int floor;
+    private final long[] timeAtValue;
+    private final short[] valueAtBucket;
+    private final long bucketSeconds;
+
+    /**
+     * @param stepSeconds stepSeconds[v]为从v降到v-1所需的秒数（v大于floor时必须不小于1）
+     * @param floor 衰减下限，降到这个值后不再变化
+     */
+    DecayCurve(long[] stepSeconds, int floor) {
+        this.floor = Math.max(0, Math.min(floor, MAX_VALUE));
+
+        timeAtValue = new long[MAX_VALUE + 1];
+        long minStep = Long.MAX_VALUE;
+        for (int v = MAX_VALUE - 1; v >= 0; v--) {
+            if (v < this.floor) {
+                timeAtValue[v] = Long.MAX_VALUE;
+                continue;
+            }
+            long step = Math.max(1, stepSeconds[v + 1]);
+            timeAtValue[v] = timeAtValue[v + 1] + step;
+            minStep = Math.min(minStep, step);
+        }
+
+        // 桶宽不大于最短的一步，每个桶内最多跨过一个数值
+        long totalSeconds = timeAtValue[this.floor];
+        long bucket = minStep == Long.MAX_VALUE ? 1 : minStep;
+        bucket = Math.max(bucket, totalSeconds / MAX_BUCKETS + 1);
+        bucketSeconds = bucket;
+
+        valueAtBucket = new short[(int) (totalSeconds / bucket) + 1];
+        int v = MAX_VALUE;
+        for (int i = 0; i < valueAtBucket.length; i++) {
+            long t = i * bucket;
+            while (v > this.floor && timeAtValue[v - 1] <= t) {
+                v--;
+            }
+            valueAtBucket[i] = (short) v;
+        }
+    }
+
+    /**
+     * 线性衰减：每intervalSeconds降1点，降到0为止
+     */
+    static DecayCurve linear(long intervalSeconds) {
+        long[] steps = new long[MAX_VALUE + 1];
+        for (int v = 1; v <= MAX_VALUE; v++) {
+            steps[v] = intervalSeconds;
+        }
+        return new DecayCurve(steps, 0);
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    /**
+     * 从baseValue开始经过elapsedSeconds秒后的数值
+     */
+    public int valueAfter(int baseValue, long elapsedSeconds) {
+        int base = clamp(baseValue);
+        if (base <= floor || elapsedSeconds <= 0) {
+            return base;
+        }
+
+        long t = timeAtValue[base] + elapsedSeconds;
+        if (t >= timeAtValue[floor]) {
+            return floor;
+        }
+
+        int v = valueAtBucket[(int) (t / bucketSeconds)];
+        while (v > floor && timeAtValue[v - 1] <= t) {
+            v--;
+        }
+        return v;
+    }
+
+    /**
+     * 从baseValue开始降到threshold及以下需要的秒数
+     * @return 已经满足返回0，永远不会满足（threshold低于下限）返回-1
+     */
+    public long secondsUntil(int baseValue, int threshold) {
+        int base = clamp(baseValue);
+        if (base <= threshold) {
+            return 0;
+        }
+        if (threshold < floor) {
+            return -1;
+        }
+        return timeAtValue[threshold] - timeAtValue[base];
+    }
+
+    /**
+     * 从value降到value-1需要的秒数
+     * @return 已经在下限时返回-1
+     */
+    public long stepSeconds(int value) {
+        int v = clamp(value);
+        if (v <= floor) {
+            return -1;
+        }
+        return timeAtValue[v - 1] - timeAtValue[v];
+    }
+
+    /**
+     * 经过elapsedSeconds秒后，下一次降1点时距离起点的秒数
+     * @return 已经降到下限时返回-1
+     */
+    public long nextStepSeconds(int baseValue, long elapsedSeconds) {
+        int base = clamp(baseValue);
+        int current = valueAfter(base, elapsedSeconds);
+        if (current <= floor) {
+            return -1;
+        }
+        return timeAtValue[current - 1] - timeAtValue[base];
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(value, MAX_VALUE));
+    }
+}
@@ -0,0 +1,513 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+/**
+ * 离线数值衰减规则
+ * 规则来自Unity下发的JSON（保存在filesDir）、随包的assets/decay_rules.json或内置默认值，
+ * 加载时编译成DecayCurve查找表；按宠物预制体名称区分规则，渲染路径上求值不分配对象
+ *
+ * 规则格式：
+ * {
+ *   "default": {
+ *     "energy": {"interval": 648},
+ *     "satiety": {"bands": [{"above": 50, "interval": 300}, {"above": 0, "interval": 432, "exponent": 0.5}], "floor": 0},
+ *     "boredReset": 600,
+ *     "boredRetrigger": 0,
+ *     "sleep": {"start": "23:00", "end": "07:00", "energyRecoveryInterval": 300, "recoverTo": 100}
+ *   },
+ *   "pets": {"Pet_CatBrown": { ...同default，缺少的项沿用default... }}
+ * }
+ * bands按数值分段：从v降到v-1使用above小于v的分段中above最大的那一段，
+ * 每步秒数为 interval * (v / 100) ^ exponent（exponent默认为0，即线性）；
+ * boredRetrigger为无聊重置后再次变得无聊的秒数（0表示不会）；
+ * sleep期间精力暂停衰减，并按energyRecoveryInterval每步恢复1点直到recoverTo。
+ * 闭式计算只处理暂停衰减，恢复和再次无聊由OfflineSimulator逐事件模拟
+ */
+public final class DecayRules {
+    private static final String TAG = "DecayRules";
+
+    private static final String ASSET_NAME = "decay_rules.json";
+    // Unity下发的规则
+    private static final String PUSHED_FILE_NAME = "decay_rules.json";
+
+    // 规则来源
+    public static final int SOURCE_BUILTIN = 0;
+    public static final int SOURCE_ASSET = 1;
+    public static final int SOURCE_PUSHED = 2;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // 睡眠恢复的默认上限
+    private static final int DEFAULT_RECOVER_TO = 100;
+
+    // 内置规则（没有推送的规则文件、随包的规则也无效时才使用）：线性衰减，单位秒
+    private static final long BUILTIN_ENERGY_DECAY_SECONDS = 648; // 精力每648秒降低1点
+    private static final long BUILTIN_SATIETY_DECAY_SECONDS = 432; // 饱食每432秒降低1点
+    private static final long BUILTIN_BORED_RESET_SECONDS = 600; // 无聊600秒后重置
+
+    private static volatile DecayRules current = createBuiltin();
+    private static boolean loaded = false;
+
+    private final Profile defaultProfile;
+    private final HashMap<String, Profile> petProfiles;
+    private final int source;
+
+    private DecayRules(Profile defaultProfile, HashMap<String, Profile> petProfiles, int source) {
+        this.defaultProfile = defaultProfile;
+        this.petProfiles = petProfiles;
+        this.source = source;
+    }
+
+    /**
+     * 当前生效的规则（还没有加载时为内置默认值）
+     */
+    public static DecayRules current() {
+        return current;
+    }
+
+    /**
+     * 首次调用时加载规则：Unity下发的规则 > 随包规则 > 内置默认值
+     */
+    public static synchronized void ensureLoaded(Context context) {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        current = load(context.getApplicationContext());
+        // Log.d(TAG, "衰减规则已加载: source=" + current.source);
+    }
+
+    /**
+     * 替换Unity下发的规则，json为空时删除下发的规则并恢复随包规则
+     * @return 规则编译成功并已生效返回true
+     */
+    public static synchronized boolean update(Context context, String json) {
+        Context appContext = context.getApplicationContext();
+        AtomicFile file = new AtomicFile(new File(appContext.getFilesDir(), PUSHED_FILE_NAME));
+        if (json == null || json.isEmpty()) {
+            file.delete();
+            current = load(appContext);
+            loaded = true;
+            return true;
+        }
+
+        DecayRules rules;
+        try {
+            rules = compile(json, SOURCE_PUSHED);
+        } catch (Exception e) {
+            Log.e(TAG, "衰减规则解析失败: " + e.getMessage());
+            return false;
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(json.getBytes("UTF-8"));
+            file.finishWrite(out);
+        } catch (Exception e) {
+            Log.e(TAG, "保存衰减规则失败: " + e.getMessage());
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+
+        current = rules;
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * 获取宠物对应的规则，没有单独配置时使用默认规则
+     */
+    public Profile forPet(String prefabName) {
+        if (prefabName != null) {
+            Profile profile = petProfiles.get(prefabName);
+            if (profile != null) {
+                return profile;
+            }
+        }
+        return defaultProfile;
+    }
+
+    public Profile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getPetProfileCount() {
+        return petProfiles.size();
+    }
+
+    /**
+     * 解析并编译规则JSON
+     */
+    public static DecayRules compile(String json, int source) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        Profile builtin = createBuiltin().defaultProfile;
+        Profile defaultProfile = root.has("default")
+                ? compileProfile(root.getJSONObject("default"), builtin)
+                : builtin;
+
+        HashMap<String, Profile> petProfiles = new HashMap<>();
+        JSONObject pets = root.optJSONObject("pets");
+        if (pets != null) {
+            Iterator<String> keys = pets.keys();
+            while (keys.hasNext()) {
+                String prefabName = keys.next();
+                petProfiles.put(prefabName, compileProfile(pets.getJSONObject(prefabName), defaultProfile));
+            }
+        }
+        return new DecayRules(defaultProfile, petProfiles, source);
+    }
+
+    private static DecayRules load(Context context) {
+        String pushed = readPushedRules(context);
+        if (pushed != null) {
+            try {
+                return compile(pushed, SOURCE_PUSHED);
+            } catch (Exception e) {
+                Log.e(TAG, "下发的衰减规则无效: " + e.getMessage());
+            }
+        }
+
+        String bundled = readAsset(context);
+        if (bundled != null) {
+            try {
+                return compile(bundled, SOURCE_ASSET);
+            } catch (Exception e) {
+                Log.e(TAG, "随包的衰减规则无效: " + e.getMessage());
+            }
+        }
+
+        return createBuiltin();
+    }
+
+    /**
+     * 内置默认规则（线性衰减）
+     */
+    private static DecayRules createBuiltin() {
+        Profile profile = new Profile(
+                DecayCurve.linear(BUILTIN_ENERGY_DECAY_SECONDS),
+                DecayCurve.linear(BUILTIN_SATIETY_DECAY_SECONDS),
+                BUILTIN_BORED_RESET_SECONDS, 0,
+                null, 0, DEFAULT_RECOVER_TO);
+        return new DecayRules(profile, new HashMap<String, Profile>(), SOURCE_BUILTIN);
+    }
+
+    private static Profile compileProfile(JSONObject json, Profile parent) throws JSONException {
+        DecayCurve energy = json.has("energy") ? compileCurve(json.getJSONObject("energy")) : parent.energy;
+        DecayCurve satiety = json.has("satiety") ? compileCurve(json.getJSONObject("satiety")) : parent.satiety;
+        long boredReset = json.optLong("boredReset", parent.boredResetSeconds);
+        long boredRetrigger = json.optLong("boredRetrigger", parent.boredRetriggerSeconds);
+
+        SleepWindow sleep = parent.sleep;
+        long recovery = parent.energyRecoverySeconds;
+        int recoverTo = parent.energyRecoverTo;
+        if (json.has("sleep")) {
+            JSONObject sleepJson = json.optJSONObject("sleep");
+            sleep = null;
+            recovery = 0;
+            recoverTo = DEFAULT_RECOVER_TO;
+            if (sleepJson != null) {
+                int start = parseMinuteOfDay(sleepJson.getString("start"));
+                int end = parseMinuteOfDay(sleepJson.getString("end"));
+                if (start != end) {
+                    sleep = new SleepWindow(start, end);
+                    recovery = sleepJson.optLong("energyRecoveryInterval", 0);
+                    recoverTo = Math.min(sleepJson.optInt("recoverTo", DEFAULT_RECOVER_TO), DecayCurve.MAX_VALUE);
+                }
+            }
+        }
+        return new Profile(energy, satiety, boredReset, boredRetrigger, sleep, recovery, recoverTo);
+    }
+
+    private static DecayCurve compileCurve(JSONObject json) throws JSONException {
+        int floor = json.optInt("floor", 0);
+
+        JSONArray bands = json.optJSONArray("bands");
+        int bandCount = bands != null ? bands.length() : 1;
+        int[] above = new int[bandCount];
+        long[] interval = new long[bandCount];
+        double[] exponent = new double[bandCount];
+        if (bands == null) {
+            above[0] = 0;
+            interval[0] = json.getLong("interval");
+            exponent[0] = json.optDouble("exponent", 0);
+        } else {
+            for (int i = 0; i < bandCount; i++) {
+                JSONObject band = bands.getJSONObject(i);
+                above[i] = band.optInt("above", 0);
+                interval[i] = band.getLong("interval");
+                exponent[i] = band.optDouble("exponent", 0);
+            }
+        }
+
+        long[] steps = new long[DecayCurve.MAX_VALUE + 1];
+        for (int v = 1; v <= DecayCurve.MAX_VALUE; v++) {
+            int band = -1;
+            for (int i = 0; i < bandCount; i++) {
+                if (above[i] < v && (band < 0 || above[i] > above[band])) {
+                    band = i;
+                }
+            }
+            if (band < 0) {
+                throw new JSONException("数值" + v + "没有对应的衰减分段");
+            }
+            if (interval[band] <= 0) {
+                throw new JSONException("衰减间隔必须大于0");
+            }
+            double scale = exponent[band] == 0 ? 1 : Math.pow(v / 100.0, exponent[band]);
+            steps[v] = Math.max(1, Math.round(interval[band] * scale));
+        }
+        return new DecayCurve(steps, floor);
+    }
+
+    /**
+     * 解析 "HH:mm"
+     */
+    private static int parseMinuteOfDay(String text) throws JSONException {
+        int colon = text.indexOf(':');
+        try {
+            int hour = Integer.parseInt(text.substring(0, colon).trim());
+            int minute = Integer.parseInt(text.substring(colon + 1).trim());
+            if (hour < 0 || hour > 24 || minute < 0 || minute >= 60) {
+                throw new JSONException("时间超出范围: " + text);
+            }
+            return (hour * 60 + minute) % (24 * 60);
+        } catch (RuntimeException e) {
+            throw new JSONException("时间格式错误: " + text);
+        }
+    }
+
+    private static String readPushedRules(Context context) {
+        File file = new File(context.getFilesDir(), PUSHED_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new String(new AtomicFile(file).readFully(), "UTF-8");
+        } catch (Exception e) {
+            Log.e(TAG, "读取下发的衰减规则失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String readAsset(Context context) {
+        InputStream in = null;
+        try {
+            in = context.getAssets().open(ASSET_NAME);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toString("UTF-8");
+        } catch (Exception e) {
+            // 没有随包规则时使用内置默认值
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个宠物类型的编译后规则
+     */
+    public static final class Profile {
+        public final DecayCurve energy;
+        public final DecayCurve satiety;
+        public final long boredResetSeconds;
+        // 无聊重置后再次变得无聊的秒数，0表示不会
+        public final long boredRetriggerSeconds;
+        // 睡眠时段，没有配置时为null
+        public final SleepWindow sleep;
+        // 睡眠期间精力每恢复1点需要的秒数，0表示不恢复
+        public final long energyRecoverySeconds;
+        // 睡眠恢复的上限
+        public final int energyRecoverTo;
+
+        Profile(DecayCurve energy, DecayCurve satiety, long boredResetSeconds, long boredRetriggerSeconds,
+                SleepWindow sleep, long energyRecoverySeconds, int energyRecoverTo) {
+            this.energy = energy;
+            this.satiety = satiety;
+            this.boredResetSeconds = boredResetSeconds;
+            this.boredRetriggerSeconds = boredRetriggerSeconds;
+            this.sleep = sleep;
+            this.energyRecoverySeconds = energyRecoverySeconds;
+            this.energyRecoverTo = energyRecoverTo;
+        }
+
+        /**
+         * 是否有闭式计算表示不了、需要逐事件模拟的规则（睡眠恢复、再次无聊）
+         */
+        public boolean needsSimulation() {
+            return boredRetriggerSeconds > 0 || (sleep != null && energyRecoverySeconds > 0);
+        }
+
+        /**
+         * 精力衰减计时的毫秒数（睡眠时段不计），整段时间按fromMillis的时区偏移计算
+         */
+        public long energyElapsedMillis(long fromMillis, long toMillis) {
+            if (toMillis <= fromMillis) {
+                return 0;
+            }
+            if (sleep == null) {
+                return toMillis - fromMillis;
+            }
+            return toMillis - fromMillis
+                    - sleep.sleepMillisBetween(fromMillis, toMillis, sleep.offsetAt(fromMillis));
+        }
+
+        /**
+         * 精力衰减计时达到elapsedMillis的时间点，整段时间按fromMillis的时区偏移计算
+         * @return 毫秒时间戳，永远达不到（全天都在睡眠）返回-1
+         */
+        public long energyTimeAfter(long fromMillis, long elapsedMillis) {
+            if (sleep == null) {
+                return fromMillis + elapsedMillis;
+            }
+            return sleep.timeAfterAwake(fromMillis, elapsedMillis, sleep.offsetAt(fromMillis));
+        }
+    }
+
+    /**
+     * 每天的睡眠时段（本地时间，可以跨过午夜）
+     * 累计睡眠时长按 整天数 * 每天睡眠时长 + 当天部分 直接算出。
+     * 本地时间由调用方传入的时区偏移换算：一次离线计算的所有调用都使用基准时间（计算起点）的偏移，
+     * 闭式计算（OfflineCalculator）和OfflineSimulator因此结果一致。
+     * 离线期间跨过夏令时切换时，切换之后的睡眠时段按旧偏移计算（最多差1小时），直到下次重置基准；
+     * 时区在每次计算时读取，用户切换时区后下一次计算即生效
+     */
+    public static final class SleepWindow {
+        public final long startMillis;
+        public final long endMillis;
+        private final long sleepPerDay;
+        // 固定时区（测试用），为null时每次读取系统默认时区
+        private final TimeZone timeZone;
+
+        SleepWindow(int startMinute, int endMinute) {
+            this(startMinute, endMinute, null);
+        }
+
+        SleepWindow(int startMinute, int endMinute, TimeZone timeZone) {
+            this.startMillis = startMinute * 60 * 1000L;
+            this.endMillis = endMinute * 60 * 1000L;
+            this.sleepPerDay = startMillis < endMillis
+                    ? endMillis - startMillis
+                    : DAY_MILLIS - startMillis + endMillis;
+            this.timeZone = timeZone;
+        }
+
+        /**
+         * timeMillis时本地时间相对UTC的偏移（毫秒），一次计算只取一次，传给下面的各个方法
+         */
+        public long offsetAt(long timeMillis) {
+            TimeZone zone = timeZone != null ? timeZone : TimeZone.getDefault();
+            return zone.getOffset(timeMillis);
+        }
+
+        /**
+         * 是否处于睡眠时段
+         */
+        public boolean isSleeping(long timeMillis, long offsetMillis) {
+            long x = Math.floorMod(timeMillis + offsetMillis, DAY_MILLIS);
+            return startMillis < endMillis
+                    ? x >= startMillis && x < endMillis
+                    : x >= startMillis || x < endMillis;
+        }
+
+        /**
+         * timeMillis之后（不含）的下一次入睡或醒来时间
+         */
+        public long nextBoundaryAfter(long timeMillis, long offsetMillis) {
+            long local = timeMillis + offsetMillis;
+            long dayStart = Math.floorDiv(local, DAY_MILLIS) * DAY_MILLIS;
+            long x = local - dayStart;
+            long first = Math.min(startMillis, endMillis);
+            long second = Math.max(startMillis, endMillis);
+            long next;
+            if (x < first) {
+                next = first;
+            } else if (x < second) {
+                next = second;
+            } else {
+                next = DAY_MILLIS + first;
+            }
+            return dayStart + next - offsetMillis;
+        }
+
+        /**
+         * [fromMillis, toMillis)中处于睡眠时段的毫秒数
+         */
+        public long sleepMillisBetween(long fromMillis, long toMillis, long offsetMillis) {
+            return cumulativeSleep(toMillis + offsetMillis) - cumulativeSleep(fromMillis + offsetMillis);
+        }
+
+        /**
+         * 从fromMillis开始累计清醒awakeMillis毫秒的时间点
+         * @return 毫秒时间戳，全天都在睡眠时返回-1
+         */
+        public long timeAfterAwake(long fromMillis, long awakeMillis, long offsetMillis) {
+            long awakePerDay = DAY_MILLIS - sleepPerDay;
+            if (awakePerDay <= 0) {
+                return -1;
+            }
+            long localFrom = fromMillis + offsetMillis;
+            long target = localFrom - cumulativeSleep(localFrom) + awakeMillis;
+
+            long days = Math.floorDiv(target, awakePerDay);
+            long remaining = target - days * awakePerDay;
+            long x;
+            if (startMillis < endMillis) {
+                // 白天里有一段睡眠：[0,start)清醒，[start,end)睡眠，[end,DAY)清醒
+                x = remaining <= startMillis ? remaining : endMillis + remaining - startMillis;
+            } else if (remaining == 0) {
+                // 跨午夜的睡眠：清醒计时在前一天入睡时就已经达到
+                x = startMillis - DAY_MILLIS;
+            } else {
+                x = endMillis + remaining;
+            }
+            // 起点本身在睡眠时段内且awakeMillis为0时，上面算出的是入睡时间，不能早于起点
+            return Math.max(fromMillis, days * DAY_MILLIS + x - offsetMillis);
+        }
+
+        /**
+         * 从本地时间0点（1970-01-01）到localMillis的累计睡眠毫秒数
+         */
+        private long cumulativeSleep(long localMillis) {
+            long days = Math.floorDiv(localMillis, DAY_MILLIS);
+            long x = localMillis - days * DAY_MILLIS;
+            long inDay;
+            if (startMillis < endMillis) {
+                inDay = Math.max(0, Math.min(x, endMillis) - startMillis);
+            } else {
+                inDay = Math.min(x, endMillis) + Math.max(0, x - startMillis);
+            }
+            return days * sleepPerDay + inDay;
+        }
+    }
+}
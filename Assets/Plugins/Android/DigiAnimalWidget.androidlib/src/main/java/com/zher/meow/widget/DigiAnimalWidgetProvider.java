@@ -6,22 +6,18 @@ import android.appwidget.AppWidgetProvider;
 import android.content.Context;
 import android.content.ComponentName;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.Typeface;
+import android.os.Bundle;
 import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
-import android.util.TypedValue;
 import android.widget.RemoteViews;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * DigiAnimal桌面小组件Provider
  * 处理小组件的更新、点击事件和动画播放
@@ -35,34 +31,50 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
     public static final String ACTION_REFRESH_WIDGET = "com.zher.meow.widget.REFRESH_WIDGET";
     public static final String ACTION_REFRESH_DATA = "com.zher.meow.widget.REFRESH_DATA";
     public static final String ACTION_STOP_ANIMATION = "com.zher.meow.widget.STOP_ANIMATION";
+    // 数值变化闹钟（StatChangeScheduler）触发的刷新
     public static final String ACTION_PERIODIC_UPDATE = "com.zher.meow.widget.PERIODIC_UPDATE";
+    public static final String ACTION_WIDGET_PINNED = "com.zher.meow.widget.WIDGET_PINNED";
     
     // Intent额外参数
     public static final String EXTRA_WIDGET_ID = "widget_id";
-    public static final String EXTRA_ANIMATION_TYPE = "animation_type";
     
-    // SharedPreferences配置
-    private static final String PREFS_NAME = "DigiAnimalWidgetData";
-    private static final String KEY_WIDGET_DATA = "widget_data";
-    private static final String KEY_WIDGET_STATE = "widget_state";
+    public static final String EXTRA_ANIMATION_TYPE = "animation_type";
     
     // 动画状态
     private static final String STATE_SIT = "sit";
     private static final String STATE_LOOK = "look";
     private static final String STATE_RUN = "run";
     
-    // 用于存储当前运行的动画Handler
-    private static Handler currentAnimationHandler = null;
+    // 宠物图片整数放大倍数（原始32x32，按mdpi计算）
+    // 构建时已按这个倍数为xhdpi及以上的屏幕密度生成放大好的帧（build.gradle的petFrameDisplayScale），这里只用于运行时备用方案
+    private static final int PIXEL_SCALE_FACTOR = 3;
+    
+    // 启动器本地播放（ViewFlipper）的翻页间隔
+    private static final int FLIPPER_RUN_INTERVAL = 120; // 跑步每帧120ms
+    private static final int FLIPPER_LOOK_INTERVAL = 150; // 左右看每帧150ms
+    private static final int FLIPPER_LOOK_CYCLES = 4; // 预先生成的左右看轮数
+    
+    // 逐帧更新模式下的帧间隔和帧率上限（由WidgetAnimationScheduler统一节流）
+    private static final int RUN_FRAME_INTERVAL = 100; // 跑步每帧100ms
+    private static final int RUN_MAX_FPS = 10;
+    private static final int LOOK_FRAME_INTERVAL = 66; // 左右看每帧66ms
+    private static final int LOOK_MAX_FPS = 15;
+    
+    // 渲染统计（主线程和渲染线程都会累加，Unity线程读取）
+    private static final AtomicInteger renderPassCount = new AtomicInteger();
+    private static final AtomicInteger textBitmapCount = new AtomicInteger();
+    private static final AtomicInteger prescaledFrameCount = new AtomicInteger();
+    private static final AtomicInteger runtimeScaledFrameCount = new AtomicInteger();
     
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
         // Log.i(TAG, "=== onUpdate called with " + appWidgetIds.length + " widgets ===");
         
-        // 更新所有小组件实例
-        for (int widgetId : appWidgetIds) {
-            // Log.d(TAG, "Updating widget ID: " + widgetId);
-            updateWidget(context, appWidgetManager, widgetId);
-        }
+        // 更新所有小组件实例（共用同一次渲染的位图）
+        updateWidgets(context, appWidgetManager, appWidgetIds);
+        
+        // 按新数据重新计算下一次数值变化的时间
+        StatChangeScheduler.scheduleNext(context);
         
         // Log.i(TAG, "=== onUpdate completed ===");
     }
@@ -72,8 +84,8 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
         super.onEnabled(context);
         // Log.i(TAG, "=== Widget ENABLED - First widget added to home screen ===");
         
-        // 启动定期更新
-        setupPeriodicUpdate(context);
+        // 在下一次数值变化时刷新
+        StatChangeScheduler.scheduleNext(context);
     }
 
     @Override
@@ -81,18 +93,133 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
         super.onDisabled(context);
         // Log.i(TAG, "=== Widget DISABLED - Last widget removed from home screen ===");
         
-        // 取消定期更新
-        cancelPeriodicUpdate(context);
+        // 取消数值变化闹钟
+        StatChangeScheduler.cancel(context);
+        
+        // 最后一个小组件已移除，停止所有动画
+        WidgetAnimationScheduler.getInstance().stopAll();
+        WidgetRenderFingerprints.getInstance().clear();
+        
+        // 写入内存中尚未落盘的离线计算时间
+        WidgetDataProvider.getInstance(context).flushPendingWrites();
+    }
+
+    @Override
+    public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager,
+                                          int appWidgetId, Bundle newOptions) {
+        super.onAppWidgetOptionsChanged(context, appWidgetManager, appWidgetId, newOptions);
+        
+        // 尺寸变化后重新渲染（指纹包含布局尺寸）
+        WidgetRenderFingerprints.getInstance().setLayoutSize(appWidgetId, newOptions);
+        WidgetUpdateCoalescer.getInstance().request(context, new int[]{appWidgetId},
+                WidgetUpdateCoalescer.DATA_NONE, null);
     }
 
     @Override
     public void onDeleted(Context context, int[] appWidgetIds) {
         super.onDeleted(context, appWidgetIds);
         // Log.i(TAG, "=== Widget DELETED - " + appWidgetIds.length + " widgets removed ===");
+        
+        // 停止已删除小组件的动画并清理它们的状态
+        for (int widgetId : appWidgetIds) {
+            stopCurrentAnimation(widgetId);
+        }
+        WidgetAnimationStates.getInstance(context).removeWidgets(appWidgetIds);
+        WidgetRenderFingerprints.getInstance().removeWidgets(appWidgetIds);
     }
 
+    /**
+     * 广播统一交给渲染线程处理，主线程只调用goAsync后立即返回
+     * 刷新类广播交给WidgetUpdateCoalescer，在合并窗口结束后一起刷新
+     */
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(final Context context, final Intent intent) {
+        final PendingResult pendingResult = goAsync();
+        Runnable finish = new Runnable() {
+            @Override
+            public void run() {
+                if (pendingResult != null) {
+                    pendingResult.finish();
+                }
+            }
+        };
+        
+        if (requestCoalescedUpdate(context, intent, finish)) {
+            return;
+        }
+        
+        WidgetRenderThread.getInstance().submit(getCoalesceKey(intent), new Runnable() {
+            @Override
+            public void run() {
+                handleReceive(context, intent);
+            }
+        }, finish);
+    }
+    
+    /**
+     * 在渲染线程上用新的渲染结果刷新所有小组件（应用进程内调用，例如WidgetUpdateService）
+     * @param onDone 刷新完成后调用，可以为null
+     */
+    public static void refreshAllWidgets(Context context, Runnable onDone) {
+        WidgetUpdateCoalescer.getInstance().requestAll(context, WidgetUpdateCoalescer.DATA_NONE, onDone);
+    }
+    
+    /**
+     * 渲染一组小组件并重新设置数值变化闹钟（WidgetUpdateCoalescer在渲染线程上调用）
+     */
+    static void renderWidgets(Context context, int[] widgetIds) {
+        new DigiAnimalWidgetProvider().onUpdate(context, AppWidgetManager.getInstance(context), widgetIds);
+    }
+    
+    /**
+     * 刷新类广播交给WidgetUpdateCoalescer合并
+     * @return 已交给合并器时返回true，onDone在合并后的刷新完成时调用
+     */
+    private static boolean requestCoalescedUpdate(Context context, Intent intent, Runnable onDone) {
+        String action = intent.getAction();
+        WidgetUpdateCoalescer coalescer = WidgetUpdateCoalescer.getInstance();
+        if (AppWidgetManager.ACTION_APPWIDGET_UPDATE.equals(action)) {
+            int[] widgetIds = intent.getIntArrayExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS);
+            if (widgetIds == null) {
+                return false;
+            }
+            coalescer.request(context, widgetIds, WidgetUpdateCoalescer.DATA_NONE, onDone);
+            return true;
+        } else if (ACTION_REFRESH_WIDGET.equals(action)) {
+            int widgetId = intent.getIntExtra(EXTRA_WIDGET_ID, -1);
+            if (widgetId == -1) {
+                return false;
+            }
+            coalescer.request(context, new int[]{widgetId}, WidgetUpdateCoalescer.DATA_NONE, onDone);
+            return true;
+        } else if (ACTION_REFRESH_DATA.equals(action)) {
+            // 重新选择当前最佳数据（自动判断游戏数据vs离线数据）后刷新所有小组件
+            coalescer.requestAll(context, WidgetUpdateCoalescer.DATA_REFRESH, onDone);
+            return true;
+        } else if (ACTION_PERIODIC_UPDATE.equals(action)) {
+            // 离线数值变化时才刷新所有小组件，否则只重新设置闹钟
+            coalescer.request(context, new int[0], WidgetUpdateCoalescer.DATA_PERIODIC, onDone);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 广播的合并键：同一个键的请求排队时只处理最后一个，null表示不合并
+     */
+    private static String getCoalesceKey(Intent intent) {
+        String action = intent.getAction();
+        if (ACTION_PLAY_ANIMATION.equals(action)) {
+            // 同一个小组件连续点击时只播放最后一次选择的动画
+            return action + ":" + intent.getIntExtra(EXTRA_WIDGET_ID, -1);
+        }
+        return null;
+    }
+    
+    /**
+     * 处理广播（渲染线程）
+     */
+    private void handleReceive(Context context, Intent intent) {
         super.onReceive(context, intent);
         // Log.d(TAG, "onReceive called with action: " + intent.getAction());
         
@@ -107,51 +234,16 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
             if (widgetId != -1 && animationType != null) {
                 playAnimation(context, widgetId, animationType);
             }
-        } else if (ACTION_REFRESH_WIDGET.equals(action)) {
-            // 刷新小组件
-            int widgetId = intent.getIntExtra(EXTRA_WIDGET_ID, -1);
-            if (widgetId != -1) {
-                AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
-                updateWidget(context, appWidgetManager, widgetId);
-            }
-        } else if (ACTION_REFRESH_DATA.equals(action)) {
-            // Log.d(TAG, "处理刷新数据请求 - 智能选择最佳数据源");
-            
-            // 使用数据提供者获取当前最佳数据（自动判断游戏数据vs离线数据）
-            WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
-            PetData refreshedData = dataProvider.getCurrentPetData();
-            
-            // 刷新所有小组件
-            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
-            ComponentName provider = new ComponentName(context, DigiAnimalWidgetProvider.class);
-            int[] widgetIds = appWidgetManager.getAppWidgetIds(provider);
-            onUpdate(context, appWidgetManager, widgetIds);
-            
-            // Log.d(TAG, "小组件刷新完成 - 数据源: " + (refreshedData != null ? refreshedData.petName : "默认数据"));
-        } else if (ACTION_PERIODIC_UPDATE.equals(action)) {
-            // Log.d(TAG, "处理定期更新请求");
-            
-            // 使用数据提供者进行定期离线更新
-            WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
-            dataProvider.periodicOfflineUpdate();
-            
-            // 刷新所有小组件
-            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
-            ComponentName provider = new ComponentName(context, DigiAnimalWidgetProvider.class);
-            int[] widgetIds = appWidgetManager.getAppWidgetIds(provider);
-            onUpdate(context, appWidgetManager, widgetIds);
-            
-            // Log.d(TAG, "定期更新完成");
-        } else if ("com.zher.meow.widget.WIDGET_PINNED".equals(action)) {
+        } else if (ACTION_WIDGET_PINNED.equals(action)) {
             // 小组件固定成功回调
             // Log.i(TAG, "小组件固定成功回调");
             int appWidgetId = intent.getIntExtra("android.appwidget.extra.APPWIDGET_ID", -1);
             // Log.i(TAG, "收到的appWidgetId: " + appWidgetId);
             if (appWidgetId != -1) {
                 // Log.i(TAG, "新固定的小组件ID: " + appWidgetId);
-                // 立即更新新添加的小组件
-                AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
-                onUpdate(context, appWidgetManager, new int[]{appWidgetId});
+                // 更新新添加的小组件（与同时到达的系统更新合并）
+                WidgetUpdateCoalescer.getInstance().request(context, new int[]{appWidgetId},
+                        WidgetUpdateCoalescer.DATA_NONE, null);
                 
                 // 通知Unity小组件添加成功
                 // Log.i(TAG, "准备调用notifyUnityWidgetAdded");
@@ -165,157 +257,276 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
     }
     
     
+    /**
+     * 更新一组小组件
+     * 宠物数据只读取一次，文本和宠物位图在同一次渲染中只生成一次，
+     * 各小组件只设置自己的按钮选中状态、动画帧和点击事件（请求码 widgetId * 10 + n）
+     */
+    private void updateWidgets(Context context, AppWidgetManager appWidgetManager, int[] widgetIds) {
+        RenderPass pass = new RenderPass(context);
+        for (int widgetId : widgetIds) {
+            // Log.d(TAG, "Updating widget ID: " + widgetId);
+            updateWidget(context, appWidgetManager, widgetId, pass);
+        }
+    }
+    
     /**
      * 更新单个小组件
      */
     private void updateWidget(Context context, AppWidgetManager appWidgetManager, int widgetId) {
+        updateWidget(context, appWidgetManager, widgetId, new RenderPass(context));
+    }
+    
+    private void updateWidget(Context context, AppWidgetManager appWidgetManager, int widgetId, RenderPass pass) {
         // Log.d(TAG, "更新小组件: " + widgetId);
         
+        // 显示内容与上次推送的相同时跳过渲染和IPC
+        WidgetRenderFingerprints fingerprints = WidgetRenderFingerprints.getInstance();
+        long fingerprint = WidgetRenderFingerprints.compute(
+                pass.hasPetData ? pass.petData : null,
+                WidgetAnimationStates.getInstance(context).getState(widgetId),
+                isLauncherAnimationEnabled(context),
+                fingerprints.getLayoutSize(appWidgetManager, widgetId),
+                context.getResources().getDisplayMetrics().densityDpi);
+        if (!fingerprints.shouldRender(widgetId, fingerprint)) {
+            // Log.d(TAG, "显示内容未变化，跳过更新: " + widgetId);
+            return;
+        }
+        
         // 创建RemoteViews
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.digianimal_widget_4x2);
         
-        // 使用新的数据提供者获取最佳数据源
-        WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
-        PetData petData = dataProvider.getCurrentPetData();
-        
-        if (petData != null && DataFreshnessChecker.isDataValid(petData)) {
+        if (pass.hasPetData) {
             // 更新宠物信息
-            updatePetInfo(context, views, petData);
+            updatePetInfo(views, pass);
             
             // 更新宠物图片
-            updatePetImage(context, views, petData);
+            updatePetImage(context, views, widgetId, pass);
         } else {
             // 显示默认数据
             updateDefaultInfo(views, context);
         }
         
         // 设置按钮点击事件
-        setupButtonClickEvents(context, views, widgetId);
+        setupButtonClickEvents(context, views, widgetId, pass);
         
         // 更新小组件
         appWidgetManager.updateAppWidget(widgetId, views);
+        fingerprints.markPushed(widgetId, fingerprint);
     }
     
     /**
-     * 从SharedPreferences加载小组件数据
+     * 更新宠物信息文本 - 使用自定义字体位图（位图取自本次渲染）
      */
-    private WidgetData loadWidgetData(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String jsonData = prefs.getString(KEY_WIDGET_DATA, null);
+    private void updatePetInfo(RemoteViews views, RenderPass pass) {
+        // Log.d(TAG, "更新宠物信息: " + pass.petData.petName);
         
-        if (jsonData == null) {
-            Log.w(TAG, "没有找到小组件数据");
-            return null;
-        }
+        // 宠物名称 - 使用文本位图
+        setTextImage(views, R.id.pet_name, pass.getTextBitmap(RenderPass.SLOT_NAME), pass.nameText);
+
+        // 年龄 - 使用文本位图
+        setTextImage(views, R.id.pet_age, pass.getTextBitmap(RenderPass.SLOT_AGE), pass.ageText);
         
-        try {
-            return WidgetData.fromJson(jsonData);
-        } catch (JSONException e) {
-            Log.e(TAG, "解析小组件数据失败", e);
-            return null;
-        }
+        // 精力 - 使用文本位图
+        setTextImage(views, R.id.pet_energy, pass.getTextBitmap(RenderPass.SLOT_ENERGY), pass.energyText);
+        
+        // 饱食度 - 使用文本位图
+        setTextImage(views, R.id.pet_satiety, pass.getTextBitmap(RenderPass.SLOT_SATIETY), pass.satietyText);
+        
+        // 宠物状态 - 根据优先级显示状态文本
+        updatePetStatus(views, pass);
+        
+        // Log.d(TAG, "宠物信息更新完成: " + pass.petData.petName + ", 年龄:" + pass.petData.ageInDays + "天");
     }
     
     /**
-     * 更新宠物信息文本 - 使用自定义字体位图
+     * 显示文本位图，位图生成失败时退回普通文本
      */
-    private void updatePetInfo(Context context, RemoteViews views, PetData petData) {
-        // Log.d(TAG, "更新宠物信息: " + petData.petName);
-        
-        int textColor = 0xFFFFFFFF; // 白色
-        // 宠物名称 - 使用文本位图
-        Bitmap nameBitmap = createTextBitmap(context, petData.petName, 18, textColor);
-        if (nameBitmap != null) {
-            views.setImageViewBitmap(R.id.pet_name, nameBitmap);
+    private void setTextImage(RemoteViews views, int viewId, Bitmap bitmap, String text) {
+        if (bitmap != null) {
+            views.setImageViewBitmap(viewId, bitmap);
         } else {
-            views.setTextViewText(R.id.pet_name, petData.petName);
+            views.setTextViewText(viewId, text);
+        }
+    }
+    
+    /**
+     * 更新宠物图片 - 像素完美放大
+     * 跑步/左右看状态下优先把帧序列交给启动器的ViewFlipper本地播放
+     */
+    private void updatePetImage(Context context, RemoteViews views, int widgetId, RenderPass pass) {
+        String currentState = getWidgetState(context, widgetId);
+        if (!STATE_SIT.equals(currentState) && isLauncherAnimationEnabled(context)
+                && applyFlipperAnimation(context, views, pass.getFlipperSequence(currentState), currentState)) {
+            return;
         }
+        hidePetFlipper(views);
+        
+        setPetFrame(context, views, R.id.pet_image, pass.getDefaultFrame());
+    }
 
-        // 年龄 - 使用文本位图
-        String ageText = String.format("年龄 %d天", petData.ageInDays);
-        Bitmap ageBitmap = createTextBitmap(context, ageText, 16, textColor);
-        if (ageBitmap != null) {
-            views.setImageViewBitmap(R.id.pet_age, ageBitmap);
-        } else {
-            views.setTextViewText(R.id.pet_age, ageText);
+    /**
+     * 创建像素完美的放大位图（从帧缓存获取，同一帧只从图集切出放大一次）
+     */
+    private Bitmap createPixelPerfectBitmap(Context context, int frame) {
+        return PetFrameCache.getInstance(context).getScaledFrame(frame, PIXEL_SCALE_FACTOR);
+    }
+    
+    /**
+     * 显示宠物帧（像素完美放大）
+     * 优先使用构建时按屏幕密度放大好的资源，RemoteViews只传资源ID，不解码、不放大也不传位图；
+     * 没有放大好的资源时才从图集切出并在运行时放大
+     * @return 放大失败时显示占位图并返回false
+     */
+    private boolean setPetFrame(Context context, RemoteViews views, int viewId, int frame) {
+        int scaledResource = PetImageHelper.getScaledFrameResource(frame);
+        if (scaledResource != 0) {
+            views.setImageViewResource(viewId, scaledResource);
+            prescaledFrameCount.incrementAndGet();
+            return true;
         }
         
-        // 精力 - 使用文本位图
-        String energyText = String.format("精力 %d", petData.energy);
-        Bitmap energyBitmap = createTextBitmap(context, energyText, 16, textColor);
-        if (energyBitmap != null) {
-            views.setImageViewBitmap(R.id.pet_energy, energyBitmap);
-        } else {
-            views.setTextViewText(R.id.pet_energy, energyText);
+        Bitmap scaledFrame = createPixelPerfectBitmap(context, frame);
+        if (scaledFrame != null) {
+            views.setImageViewBitmap(viewId, scaledFrame);
+            runtimeScaledFrameCount.incrementAndGet();
+            // Log.d(TAG, "使用像素完美放大的图片: " + scaledFrame.getWidth() + "x" + scaledFrame.getHeight());
+            return true;
+        }
+        // 备用方案：显示占位图
+        views.setImageViewResource(viewId, PetFrameIndex.PLACEHOLDER);
+        Log.w(TAG, "像素完美放大失败，使用占位图: " + frame);
+        return false;
+    }
+    
+    /**
+     * 生成状态对应的ViewFlipper帧序列
+     * @return 找不到动画帧时返回null
+     */
+    private int[] buildFlipperSequence(int petType, String state) {
+        if (STATE_RUN.equals(state)) {
+            int[] runFrames = PetImageHelper.getFrames(petType, PetFrameIndex.ANIM_RUN);
+            if (runFrames.length == 0) {
+                return null;
+            }
+            return runFrames.clone();
+        } else if (STATE_LOOK.equals(state)) {
+            int[][] lookAnimations = getLookAnimations(petType);
+            if (lookAnimations == null) {
+                return null;
+            }
+            return buildLookSequence(lookAnimations);
+        }
+        return null;
+    }
+    
+    /**
+     * 左看、右看动画帧（各至少两帧），找不到时返回null
+     */
+    private static int[][] getLookAnimations(int petType) {
+        int[] lookLeft = PetImageHelper.getFrames(petType, PetFrameIndex.ANIM_LOOKLEFT);
+        int[] lookRight = PetImageHelper.getFrames(petType, PetFrameIndex.ANIM_LOOKRIGHT);
+        if (lookLeft.length < 2 || lookRight.length < 2) {
+            return null;
+        }
+        return new int[][]{
+            lookLeft,   // 左看动画
+            lookRight   // 右看动画
+        };
+    }
+    
+    /**
+     * 把当前状态的帧序列放入ViewFlipper，由启动器本地循环播放
+     * @return 找不到动画帧时返回false，由调用方显示静态帧
+     */
+    private boolean applyFlipperAnimation(Context context, RemoteViews views, int[] sequence, String state) {
+        if (sequence == null) {
+            return false;
         }
+        int flipInterval = STATE_RUN.equals(state) ? FLIPPER_RUN_INTERVAL : FLIPPER_LOOK_INTERVAL;
         
-        // 饱食度 - 使用文本位图
-        String satietyText = String.format("饱食 %d", petData.satiety);
-        Bitmap satietyBitmap = createTextBitmap(context, satietyText, 16, textColor);
-        if (satietyBitmap != null) {
-            views.setImageViewBitmap(R.id.pet_satiety, satietyBitmap);
-        } else {
-            views.setTextViewText(R.id.pet_satiety, satietyText);
+        // 每一帧是一个子视图；同一位图对象在RemoteViews中只会打包一次
+        views.removeAllViews(R.id.pet_flipper);
+        for (int frame : sequence) {
+            RemoteViews frameView = new RemoteViews(context.getPackageName(), R.layout.digianimal_widget_frame);
+            if (!setPetFrame(context, frameView, R.id.pet_frame, frame)) {
+                return false;
+            }
+            views.addView(R.id.pet_flipper, frameView);
         }
         
-        // 宠物状态 - 根据优先级显示状态文本
-        updatePetStatus(context, views, petData);
+        views.setInt(R.id.pet_flipper, "setFlipInterval", flipInterval);
+        views.setDisplayedChild(R.id.pet_flipper, 0);
+        views.setViewVisibility(R.id.pet_image, android.view.View.GONE);
+        views.setViewVisibility(R.id.pet_flipper, android.view.View.VISIBLE);
         
-        // Log.d(TAG, "宠物信息更新完成: " + petData.petName + ", 年龄:" + petData.ageInDays + "天");
+        // Log.d(TAG, "启动器本地播放: " + state + ", " + sequence.length + "帧, 间隔" + flipInterval + "ms");
+        return true;
     }
     
     /**
-     * 更新宠物图片 - 像素完美放大
+     * 预先随机生成几轮左右看序列
+     * 每轮：frame1 -> frame2 -> frame1，然后停留1-2秒（用重复帧表示停留）
      */
-    private void updatePetImage(Context context, RemoteViews views, PetData petData) {
-        int imageResId = PetImageHelper.getDefaultImageResource(context, petData.prefabName);
-        Bitmap scaledBitmap = createPixelPerfectBitmap(context, imageResId);
+    private int[] buildLookSequence(int[][] lookAnimations) {
+        int[] directions = new int[FLIPPER_LOOK_CYCLES];
+        int[] holdFrames = new int[FLIPPER_LOOK_CYCLES];
+        int totalFrames = 0;
         
-        if (scaledBitmap != null) {
-            views.setImageViewBitmap(R.id.pet_image, scaledBitmap);
-            // Log.d(TAG, "使用像素完美放大的图片: " + scaledBitmap.getWidth() + "x" + scaledBitmap.getHeight());
-        } else {
-            // 备用方案：直接使用资源
-            views.setImageViewResource(R.id.pet_image, imageResId);
-            Log.w(TAG, "像素完美放大失败，使用原始资源");
+        for (int i = 0; i < FLIPPER_LOOK_CYCLES; i++) {
+            directions[i] = (int)(Math.random() * 2); // 0=左看，1=右看
+            int waitTime = (int)(1000 + Math.random() * 1000); // 1000-2000ms
+            holdFrames[i] = Math.max(1, waitTime / FLIPPER_LOOK_INTERVAL);
+            totalFrames += 3 + holdFrames[i];
         }
+        
+        int[] sequence = new int[totalFrames];
+        int index = 0;
+        for (int i = 0; i < FLIPPER_LOOK_CYCLES; i++) {
+            int[] selectedAnimation = lookAnimations[directions[i]];
+            sequence[index++] = selectedAnimation[0];
+            sequence[index++] = selectedAnimation[1];
+            sequence[index++] = selectedAnimation[0];
+            for (int j = 0; j < holdFrames[i]; j++) {
+                sequence[index++] = selectedAnimation[0];
+            }
+        }
+        return sequence;
     }
-
+    
     /**
-     * 创建像素完美的放大位图
+     * 隐藏ViewFlipper并释放其中的帧，显示静态图片
      */
-    private Bitmap createPixelPerfectBitmap(Context context, int resourceId) {
-        try {
-            // 加载原始位图，禁用任何缩放
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inScaled = false; // 禁用自动缩放
-            options.inDither = false; // 禁用抖动
-            options.inPreferredConfig = Bitmap.Config.ARGB_8888; // 使用高质量配置
-            
-            Bitmap originalBitmap = BitmapFactory.decodeResource(context.getResources(), resourceId, options);
-            if (originalBitmap == null) {
-                return null;
-            }
-            
-            // 使用 Matrix 进行整数倍放大
-            int scaleFactor = 3; // 原始32x32
-            Matrix matrix = new Matrix();
-            matrix.setScale(scaleFactor, scaleFactor);
-            
-            // 创建放大后的位图
-            Bitmap scaledBitmap = Bitmap.createBitmap(
-                originalBitmap, 0, 0, 
-                originalBitmap.getWidth(), originalBitmap.getHeight(), 
-                matrix, false // 禁用滤镜，保持像素锐利
-            );
-            
-            // Log.d(TAG, "像素完美放大: " + originalBitmap.getWidth() + "x" + originalBitmap.getHeight() + 
-            //       " -> " + scaledBitmap.getWidth() + "x" + scaledBitmap.getHeight());
-            
-            return scaledBitmap;
-        } catch (Exception e) {
-            Log.e(TAG, "创建像素完美位图失败: " + e.getMessage());
-            return null;
+    private void hidePetFlipper(RemoteViews views) {
+        views.removeAllViews(R.id.pet_flipper);
+        views.setViewVisibility(R.id.pet_flipper, android.view.View.GONE);
+        views.setViewVisibility(R.id.pet_image, android.view.View.VISIBLE);
+    }
+    
+    /**
+     * 是否使用启动器本地播放动画（ViewFlipper）
+     * 部分启动器对ViewFlipper支持有问题，可以关闭后退回逐帧更新
+     */
+    private static boolean isLauncherAnimationEnabled(Context context) {
+        return WidgetStateStore.getInstance(context).isLauncherAnimationEnabled();
+    }
+    
+    /**
+     * 切换动画播放方式，并按当前状态重新播放所有小组件的动画
+     */
+    public static void setLauncherAnimationEnabled(Context context, boolean enabled) {
+        WidgetStateStore.getInstance(context).begin().putLauncherAnimationEnabled(enabled).commit();
+        
+        WidgetAnimationStates states = WidgetAnimationStates.getInstance(context);
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        ComponentName provider = new ComponentName(context, DigiAnimalWidgetProvider.class);
+        for (int widgetId : appWidgetManager.getAppWidgetIds(provider)) {
+            String currentState = WidgetAnimationStates.toStateName(states.getState(widgetId));
+            Intent intent = new Intent(context, DigiAnimalWidgetProvider.class);
+            intent.setAction(ACTION_PLAY_ANIMATION);
+            intent.putExtra(EXTRA_WIDGET_ID, widgetId);
+            intent.putExtra(EXTRA_ANIMATION_TYPE, currentState);
+            context.sendBroadcast(intent);
         }
     }
     
@@ -330,28 +541,22 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
         
         // 隐藏状态显示（默认状态良好）
         views.setViewVisibility(R.id.pet_status, android.view.View.GONE);
+        hidePetFlipper(views);
         
         // 使用像素完美放大的默认图片 (sit_1)
-        int defaultFrame = PetImageHelper.getSingleFrame(context, "Pet_CatBrown", "sit_1");
-        Bitmap scaledBitmap = createPixelPerfectBitmap(context, defaultFrame);
-        if (scaledBitmap != null) {
-            views.setImageViewBitmap(R.id.pet_image, scaledBitmap);
-        } else {
-            views.setImageViewResource(R.id.pet_image, defaultFrame);
-        }
+        int defaultFrame = PetImageHelper.getFrame(PetTypeRegistry.DEFAULT_PET_TYPE, PetFrameIndex.ANIM_SIT, 0);
+        setPetFrame(context, views, R.id.pet_image, defaultFrame);
     }
     
     /**
      * 设置按钮点击事件和文本
      */
-    private void setupButtonClickEvents(Context context, RemoteViews views, int widgetId) {
+    private void setupButtonClickEvents(Context context, RemoteViews views, int widgetId, RenderPass pass) {
         // 获取当前状态
-        String currentState = getWidgetState(context);
+        String currentState = getWidgetState(context, widgetId);
         
         // 设置按钮文本位图
-        updateButtonText(context, views, R.id.btn_sit, "坐下", STATE_SIT.equals(currentState));
-        updateButtonText(context, views, R.id.btn_visit, "左右看", STATE_LOOK.equals(currentState));
-        updateButtonText(context, views, R.id.btn_run, "跑步", STATE_RUN.equals(currentState));
+        updateAllButtonTexts(views, pass, currentState);
         
         // 坐下按钮
         Intent sitIntent = createAnimationIntent(context, widgetId, "sit");
@@ -414,16 +619,23 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
         }
     }
     
+    /**
+     * 更新三个按钮的文本位图和选中状态
+     */
+    private void updateAllButtonTexts(RemoteViews views, RenderPass pass, String currentState) {
+        updateButtonText(views, R.id.btn_sit, pass.getTextBitmap(RenderPass.SLOT_BUTTON_SIT),
+                "坐下", STATE_SIT.equals(currentState));
+        updateButtonText(views, R.id.btn_visit, pass.getTextBitmap(RenderPass.SLOT_BUTTON_LOOK),
+                "左右看", STATE_LOOK.equals(currentState));
+        updateButtonText(views, R.id.btn_run, pass.getTextBitmap(RenderPass.SLOT_BUTTON_RUN),
+                "跑步", STATE_RUN.equals(currentState));
+    }
+    
     /**
      * 更新按钮文本位图
      */
-    private void updateButtonText(Context context, RemoteViews views, int buttonId, String text, boolean isSelected) {
+    private void updateButtonText(RemoteViews views, int buttonId, Bitmap textBitmap, String text, boolean isSelected) {
         try {
-            // 文本颜色统一为白色
-            int textColor = 0xFFFFFFFF; // 统一使用白色
-            
-            // 创建文本位图 - 可以调整这里的数字来改变字体大小
-            Bitmap textBitmap = createButtonTextBitmap(context, text, textColor, 16); // 字体大小：16sp（可调整）
             if (textBitmap != null) {
                 views.setImageViewBitmap(buttonId, textBitmap);
                 // Log.d(TAG, "设置按钮文本: " + text + ", 选中: " + isSelected + ", 位图尺寸: " + textBitmap.getWidth() + "x" + textBitmap.getHeight());
@@ -447,15 +659,11 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
      */
     private Bitmap createButtonTextBitmap(Context context, String text, int textColor, int textSize) {
         try {
-            // 加载自定义字体
-            Typeface customFont = Typeface.createFromAsset(context.getAssets(), "fonts/ark_pixel_font_regular.ttf");
-            
-            // 创建Paint对象
-            Paint paint = new Paint();
-            paint.setTypeface(customFont);
-            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, textSize, context.getResources().getDisplayMetrics()));
-            paint.setColor(textColor);
-            paint.setAntiAlias(false); // 像素字体不需要抗锯齿
+            // 从字体缓存获取画笔（像素字体不需要抗锯齿）
+            Paint paint = WidgetFontCache.getTextPaint(context, textSize, textColor, false);
+            if (paint == null) {
+                return null;
+            }
             
             // 测量文本尺寸
             float textWidth = paint.measureText(text);
@@ -528,32 +736,35 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
     private void playAnimation(Context context, int widgetId, String animationType) {
         // Log.d(TAG, "切换到状态: " + animationType + " (Widget: " + widgetId + ")");
         
-        // 停止当前动画
-        stopCurrentAnimation();
+        // 停止该小组件当前的动画（其他小组件的动画不受影响）
+        stopCurrentAnimation(widgetId);
         
         // 保存当前状态
-        saveWidgetState(context, animationType);
+        saveWidgetState(context, widgetId, animationType);
+        
+        // 选中状态变化：完整更新一次（宠物信息、按钮、点击事件）
+        // 启动器本地播放时帧序列也随这次更新交给ViewFlipper，之后不再逐帧IPC
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        updateWidget(context, appWidgetManager, widgetId);
+        if (isLauncherAnimationEnabled(context)) {
+            return;
+        }
         
-        // 获取当前宠物数据
-        WidgetData widgetData = loadWidgetData(context);
-        if (widgetData == null || widgetData.selectedPetData == null) {
+        // 获取当前宠物数据（内存快照）
+        PetSnapshot petSnapshot = WidgetDataProvider.getInstance(context).getSnapshot();
+        if (petSnapshot.source == PetSnapshot.SOURCE_DEFAULT) {
             Log.w(TAG, "无法播放动画：没有宠物数据");
             return;
         }
         
-        if ("sit".equals(animationType)) {
-            // 坐下状态：显示sit_1静态帧
-            setState_Sit(context, widgetId, widgetData.selectedPetData.prefabName);
-        } else if ("look".equals(animationType)) {
+        // 坐下状态的sit_1静态帧已经随完整更新显示，逐帧更新只需要处理动画状态
+        if ("look".equals(animationType)) {
             // 左右看状态：播放左右看动画，然后保持在某个静态帧
-            setState_Look(context, widgetId, widgetData.selectedPetData.prefabName);
+            setState_Look(context, widgetId, petSnapshot.petType);
         } else if ("run".equals(animationType)) {
             // 跑步状态：循环播放跑步动画
-            setState_Run(context, widgetId, widgetData.selectedPetData.prefabName);
+            setState_Run(context, widgetId, petSnapshot.petType);
         }
-        
-        // 更新所有按钮状态
-        updateAllButtonStates(context, widgetId);
     }
     
     /**
@@ -565,15 +776,14 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
             RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.digianimal_widget_4x2);
             
             // 获取当前状态
-            String currentState = getWidgetState(context);
+            String currentState = getWidgetState(context, widgetId);
             
             // 更新按钮文本和状态
-            updateButtonText(context, views, R.id.btn_sit, "坐下", STATE_SIT.equals(currentState));
-            updateButtonText(context, views, R.id.btn_visit, "左右看", STATE_LOOK.equals(currentState));
-            updateButtonText(context, views, R.id.btn_run, "跑步", STATE_RUN.equals(currentState));
+            updateAllButtonTexts(views, new RenderPass(context), currentState);
             
             // 只更新按钮，不重新设置点击事件
             appWidgetManager.partiallyUpdateAppWidget(widgetId, views);
+            WidgetRenderFingerprints.getInstance().invalidate(widgetId);
             // Log.d(TAG, "按钮状态已更新，当前状态: " + currentState);
         } catch (Exception e) {
             Log.e(TAG, "更新按钮状态失败", e);
@@ -585,13 +795,13 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
      */
     private void playFrameSequence(Context context, int widgetId, int[] frames) {
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
-        Handler handler = new Handler(Looper.getMainLooper());
+        Handler handler = new Handler(WidgetRenderThread.getInstance().getLooper());
         
         final int frameInterval = 150; // 每帧150ms
         
         for (int i = 0; i < frames.length; i++) {
             final int frameIndex = i;
-            final int frameResource = frames[i];
+            final int frame = frames[i];
             
             handler.postDelayed(new Runnable() {
                 @Override
@@ -600,22 +810,20 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
                     RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.digianimal_widget_4x2);
                     
                     // 保持其他信息不变，只更新图片
-                    WidgetData widgetData = loadWidgetData(context);
-                    if (widgetData != null && widgetData.selectedPetData != null) {
-                        updatePetInfo(context, views, widgetData.selectedPetData);
-                        setupButtonClickEvents(context, views, widgetId);
+                    PetSnapshot petSnapshot = WidgetDataProvider.getInstance(context).getSnapshot();
+                    if (petSnapshot.source != PetSnapshot.SOURCE_DEFAULT) {
+                        RenderPass pass = new RenderPass(context);
+                        updatePetInfo(views, pass);
+                        setupButtonClickEvents(context, views, widgetId, pass);
                     }
                     
                     // 设置当前动画帧（像素完美放大）
-                    Bitmap scaledFrame = createPixelPerfectBitmap(context, frameResource);
-                    if (scaledFrame != null) {
-                        views.setImageViewBitmap(R.id.pet_image, scaledFrame);
-                    } else {
-                        views.setImageViewResource(R.id.pet_image, frameResource);
-                    }
+                    hidePetFlipper(views);
+                    setPetFrame(context, views, R.id.pet_image, frame);
                     
                     // 更新小组件
                     appWidgetManager.updateAppWidget(widgetId, views);
+                    WidgetRenderFingerprints.getInstance().invalidate(widgetId);
                     
                     // 如果是最后一帧，恢复默认状态
                     if (frameIndex == frames.length - 1) {
@@ -631,45 +839,14 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
         }
     }
 
-    /**
-     * 将像素风位图按整数倍最近邻放大，避免模糊
-     */
-    private Bitmap scalePixelArtBitmap(Context context, Bitmap src) {
-        if (src == null) return null;
-        // 以基准目标尺寸128dp为例，转成像素后计算最接近的整数倍
-        int targetPx = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 128, context.getResources().getDisplayMetrics());
-        int w = src.getWidth();
-        int h = src.getHeight();
-        if (w <= 0 || h <= 0) return src;
-        int scaleW = Math.max(1, targetPx / w);
-        int scaleH = Math.max(1, targetPx / h);
-        int scale = Math.max(1, Math.min(scaleW, scaleH));
-        // 整数倍放大
-        int dstW = w * scale;
-        int dstH = h * scale;
-        return Bitmap.createScaledBitmap(src, dstW, dstH, false);
-    }
-
     /**
      * 更新宠物状态显示
      * 优先级：精力≤10 > 饱食≤10 > isBored=true
      */
-    private void updatePetStatus(Context context, RemoteViews views, PetData petData) {
-        String statusText = null;
-        
-        // 按优先级判断状态
-        if (petData.energy <= 10) {
-            statusText = "好困…";
-        } else if (petData.satiety <= 10) {
-            statusText = "好饿…";
-        } else if (petData.isBored) {
-            statusText = "玩累了…";
-        }
-        
-        if (statusText != null) {
+    private void updatePetStatus(RemoteViews views, RenderPass pass) {
+        if (pass.statusText != null) {
             // 显示状态文本（红色，字号14）
-            int redColor = 0xFFFF0000; // 红色
-            Bitmap statusBitmap = createTextBitmap(context, statusText, 14, redColor);
+            Bitmap statusBitmap = pass.getTextBitmap(RenderPass.SLOT_STATUS);
             if (statusBitmap != null) {
                 views.setImageViewBitmap(R.id.pet_status, statusBitmap);
                 views.setViewVisibility(R.id.pet_status, android.view.View.VISIBLE);
@@ -687,14 +864,11 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
      */
     private Bitmap createTextBitmap(Context context, String text, int textSizeSp, int textColor) {
         try {
-            // 加载自定义字体
-            Typeface customTypeface = Typeface.createFromAsset(context.getAssets(), "fonts/ark_pixel_font_regular.ttf");
-            
-            // 设置画笔
-            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            paint.setTypeface(customTypeface);
-            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, textSizeSp, context.getResources().getDisplayMetrics()));
-            paint.setColor(textColor);
+            // 从字体缓存获取画笔
+            Paint paint = WidgetFontCache.getTextPaint(context, textSizeSp, textColor, true);
+            if (paint == null) {
+                return null;
+            }
             
             // 测量文本尺寸
             Paint.FontMetrics fontMetrics = paint.getFontMetrics();
@@ -719,63 +893,50 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
     
     /**
      * 显示单个帧
+     * 只把pet_image打包进RemoteViews并局部更新，宠物信息、按钮和点击事件
+     * 只在数据或选中状态变化时由updateWidget完整发送（ViewFlipper也已在那次更新中隐藏）
      */
-    private void showSingleFrame(Context context, int widgetId, int frameResource) {
+    private void showSingleFrame(Context context, int widgetId, int frame) {
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.digianimal_widget_4x2);
         
-        // 保持其他信息不变，只更新图片
-        WidgetData widgetData = loadWidgetData(context);
-        if (widgetData != null && widgetData.selectedPetData != null) {
-            updatePetInfo(context, views, widgetData.selectedPetData);
-            setupButtonClickEvents(context, views, widgetId);
-        }
+        setPetFrame(context, views, R.id.pet_image, frame);
         
-        // 设置指定帧
-        Bitmap scaledFrame = createPixelPerfectBitmap(context, frameResource);
-        if (scaledFrame != null) {
-            views.setImageViewBitmap(R.id.pet_image, scaledFrame);
-        } else {
-            views.setImageViewResource(R.id.pet_image, frameResource);
-        }
+        appWidgetManager.partiallyUpdateAppWidget(widgetId, views);
         
-        appWidgetManager.updateAppWidget(widgetId, views);
+        // 显示的帧已经不是完整更新时的那一帧
+        WidgetRenderFingerprints.getInstance().invalidate(widgetId);
     }
     
     
     /**
-     * 停止当前动画
+     * 停止指定小组件的动画
      */
-    private void stopCurrentAnimation() {
-        if (currentAnimationHandler != null) {
-            currentAnimationHandler.removeCallbacksAndMessages(null);
-            currentAnimationHandler = null;
-            // Log.d(TAG, "已停止当前动画");
-        }
+    private void stopCurrentAnimation(int widgetId) {
+        WidgetAnimationScheduler.getInstance().stop(widgetId);
+        // Log.d(TAG, "已停止小组件动画: " + widgetId);
     }
     
     /**
-     * 保存小组件状态
+     * 保存小组件状态（按widgetId分别保存）
      */
-    private void saveWidgetState(Context context, String state) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        prefs.edit().putString(KEY_WIDGET_STATE, state).apply();
-        // Log.d(TAG, "保存状态: " + state);
+    private void saveWidgetState(Context context, int widgetId, String state) {
+        WidgetAnimationStates.getInstance(context).setState(widgetId, WidgetAnimationStates.toStateCode(state));
+        // Log.d(TAG, "保存状态: " + widgetId + " -> " + state);
     }
     
     /**
-     * 获取小组件状态
+     * 获取小组件状态，没有保存过时默认坐下状态
      */
-    private String getWidgetState(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getString(KEY_WIDGET_STATE, STATE_SIT); // 默认坐下状态
+    private String getWidgetState(Context context, int widgetId) {
+        return WidgetAnimationStates.toStateName(WidgetAnimationStates.getInstance(context).getState(widgetId));
     }
     
     /**
      * 设置坐下状态
      */
-    private void setState_Sit(Context context, int widgetId, String prefabName) {
-        int sitFrame = PetImageHelper.getSingleFrame(context, prefabName, "sit_1");
+    private void setState_Sit(Context context, int widgetId, int petType) {
+        int sitFrame = PetImageHelper.getFrame(petType, PetFrameIndex.ANIM_SIT, 0);
         if (sitFrame != 0) {
             showSingleFrame(context, widgetId, sitFrame);
             // Log.d(TAG, "切换到坐下状态");
@@ -785,124 +946,281 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
     /**
      * 设置左右看状态（循环模式）
      */
-    private void setState_Look(Context context, int widgetId, String prefabName) {
-        currentAnimationHandler = new Handler(Looper.getMainLooper());
+    private void setState_Look(Context context, int widgetId, int petType) {
+        // 获取左看、右看动画帧，用于随机选择
+        int[][] lookAnimations = getLookAnimations(petType);
         
-        // 获取所有需要的动画帧
-        int lookleft_1 = PetImageHelper.getSingleFrame(context, prefabName, "lookleft_1");
-        int lookleft_2 = PetImageHelper.getSingleFrame(context, prefabName, "lookleft_2");
-        int lookright_1 = PetImageHelper.getSingleFrame(context, prefabName, "lookright_1");
-        int lookright_2 = PetImageHelper.getSingleFrame(context, prefabName, "lookright_2");
-        
-        if (lookleft_1 == 0 || lookleft_2 == 0 || lookright_1 == 0 || lookright_2 == 0) {
+        if (lookAnimations == null) {
             Log.w(TAG, "找不到左右看动画帧，使用坐下状态");
-            setState_Sit(context, widgetId, prefabName);
+            setState_Sit(context, widgetId, petType);
             return;
         }
         
-        // 存储动画帧数组，用于随机选择
-        int[][] lookAnimations = {
-            {lookleft_1, lookleft_2},   // 左看动画
-            {lookright_1, lookright_2}  // 右看动画
-        };
-        
         // 开始左右看循环
-        startLookCycle(context, widgetId, lookAnimations);
+        WidgetAnimationScheduler.getInstance().start(widgetId,
+            new LookCycleTrack(context, widgetId, lookAnimations), LOOK_MAX_FPS);
         // Log.d(TAG, "开始左右看循环动画");
     }
     
     /**
-     * 开始左右看循环
+     * 设置跑步状态
+     */
+    private void setState_Run(Context context, int widgetId, int petType) {
+        // 获取跑步动画帧（共用数组，只读）
+        int[] runFrames = PetImageHelper.getFrames(petType, PetFrameIndex.ANIM_RUN);
+        
+        if (runFrames.length == 0) {
+            Log.w(TAG, "找不到跑步动画帧，使用坐下状态");
+            setState_Sit(context, widgetId, petType);
+            return;
+        }
+        
+        // 开始循环动画
+        WidgetAnimationScheduler.getInstance().start(widgetId,
+            new FrameLoopTrack(context, widgetId, runFrames, RUN_FRAME_INTERVAL), RUN_MAX_FPS);
+        // Log.d(TAG, "开始跑步循环动画");
+    }
+    
+    /**
+     * 一次渲染中所有小组件共用的数据和位图
+     * 宠物数据在创建时读取一次；文本位图和动画帧序列第一次用到时生成，之后同一次渲染直接复用
      */
-    private void startLookCycle(Context context, int widgetId, int[][] lookAnimations) {
-        if (currentAnimationHandler == null) return; // 动画已被停止
+    private class RenderPass {
+        static final int SLOT_NAME = 0;
+        static final int SLOT_AGE = 1;
+        static final int SLOT_ENERGY = 2;
+        static final int SLOT_SATIETY = 3;
+        static final int SLOT_STATUS = 4;
+        static final int SLOT_BUTTON_SIT = 5;
+        static final int SLOT_BUTTON_LOOK = 6;
+        static final int SLOT_BUTTON_RUN = 7;
+        private static final int SLOT_COUNT = 8;
         
-        // 随机选择左看或右看（0=左看，1=右看）
-        int randomDirection = (int)(Math.random() * 2);
-        int[] selectedAnimation = lookAnimations[randomDirection];
-        String direction = randomDirection == 0 ? "左看" : "右看";
+        final Context context;
+        final PetData petData;
+        // 快照中解析好的宠物类型句柄
+        final int petType;
+        final boolean hasPetData;
         
-        // Log.d(TAG, "播放" + direction + "动画");
+        final String nameText;
+        final String ageText;
+        final String energyText;
+        final String satietyText;
+        // 没有状态需要显示时为null
+        final String statusText;
         
-        // 播放选中的动画：frame1 -> frame2 -> frame1
-        int[] sequence = {selectedAnimation[0], selectedAnimation[1], selectedAnimation[0]};
-        int frameInterval = 30; // 每帧30ms
+        private final Bitmap[] bitmaps = new Bitmap[SLOT_COUNT];
+        private final boolean[] created = new boolean[SLOT_COUNT];
+        private int defaultFrame = 0;
+        private int[] runSequence;
+        private int[] lookSequence;
         
-        // 播放动画序列
-        for (int i = 0; i < sequence.length; i++) {
-            final int frameResource = sequence[i];
-            final boolean isLastFrame = (i == sequence.length - 1);
+        RenderPass(Context context) {
+            this.context = context;
+            PetSnapshot snapshot = WidgetDataProvider.getInstance(context).getSnapshot();
+            this.petData = snapshot.toPetData();
+            this.petType = snapshot.petType;
+            this.hasPetData = petData != null && DataFreshnessChecker.isDataValid(petData);
             
-            currentAnimationHandler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    if (currentAnimationHandler == null) return; // 检查动画是否被停止
-                    
-                    showSingleFrame(context, widgetId, frameResource);
-                    
-                    // 最后一帧后等待随机时间，然后继续下一个循环
-                    if (isLastFrame) {
-                        scheduleNextLookCycle(context, widgetId, lookAnimations);
-                    }
+            if (hasPetData) {
+                nameText = petData.petName;
+                ageText = String.format("年龄 %d天", petData.ageInDays);
+                energyText = String.format("精力 %d", petData.energy);
+                satietyText = String.format("饱食 %d", petData.satiety);
+                statusText = getStatusText(petData);
+            } else {
+                nameText = null;
+                ageText = null;
+                energyText = null;
+                satietyText = null;
+                statusText = null;
+            }
+            renderPassCount.incrementAndGet();
+        }
+        
+        /**
+         * 获取文本位图，同一次渲染中每个位置只生成一次
+         * @return 生成失败时返回null
+         */
+        Bitmap getTextBitmap(int slot) {
+            if (created[slot]) {
+                return bitmaps[slot];
+            }
+            int white = 0xFFFFFFFF;
+            Bitmap bitmap;
+            switch (slot) {
+                case SLOT_NAME:
+                    bitmap = createTextBitmap(context, nameText, 18, white);
+                    break;
+                case SLOT_AGE:
+                    bitmap = createTextBitmap(context, ageText, 16, white);
+                    break;
+                case SLOT_ENERGY:
+                    bitmap = createTextBitmap(context, energyText, 16, white);
+                    break;
+                case SLOT_SATIETY:
+                    bitmap = createTextBitmap(context, satietyText, 16, white);
+                    break;
+                case SLOT_STATUS:
+                    // 状态文本红色，字号14
+                    bitmap = createTextBitmap(context, statusText, 14, 0xFFFF0000);
+                    break;
+                case SLOT_BUTTON_SIT:
+                    bitmap = createButtonTextBitmap(context, "坐下", white, 16);
+                    break;
+                case SLOT_BUTTON_LOOK:
+                    bitmap = createButtonTextBitmap(context, "左右看", white, 16);
+                    break;
+                default:
+                    bitmap = createButtonTextBitmap(context, "跑步", white, 16);
+                    break;
+            }
+            bitmaps[slot] = bitmap;
+            created[slot] = true;
+            textBitmapCount.incrementAndGet();
+            return bitmap;
+        }
+        
+        int getDefaultFrame() {
+            if (defaultFrame == 0) {
+                defaultFrame = PetImageHelper.getFrame(petType, PetFrameIndex.ANIM_SIT, 0);
+            }
+            return defaultFrame;
+        }
+        
+        /**
+         * 获取ViewFlipper帧序列，同一状态的小组件共用
+         */
+        int[] getFlipperSequence(String state) {
+            if (STATE_RUN.equals(state)) {
+                if (runSequence == null) {
+                    runSequence = buildFlipperSequence(petType, state);
                 }
-            }, i * frameInterval);
+                return runSequence;
+            }
+            if (lookSequence == null) {
+                lookSequence = buildFlipperSequence(petType, state);
+            }
+            return lookSequence;
         }
     }
     
     /**
-     * 安排下一个左右看循环
+     * 状态文本，优先级：精力≤10 > 饱食≤10 > isBored=true
+     * @return 没有状态需要显示时返回null
+     */
+    private static String getStatusText(PetData petData) {
+        switch (WidgetRenderFingerprints.getStatusCode(petData)) {
+            case 1:
+                return "好困…";
+            case 2:
+                return "好饿…";
+            case 3:
+                return "玩累了…";
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * 渲染次数（每次onUpdate或单个小组件更新算一次）
+     */
+    public static int getRenderPassCount() {
+        return renderPassCount.get();
+    }
+    
+    /**
+     * 生成的文本位图数，多个小组件共用一次渲染时不随小组件数量增加
+     */
+    public static int getTextBitmapCount() {
+        return textBitmapCount.get();
+    }
+    
+    /**
+     * 直接使用构建时放大好的资源显示的帧数
+     */
+    public static int getPrescaledFrameCount() {
+        return prescaledFrameCount.get();
+    }
+    
+    /**
+     * 找不到放大好的资源、在运行时从图集切出放大的帧数
      */
-    private void scheduleNextLookCycle(Context context, int widgetId, int[][] lookAnimations) {
-        if (currentAnimationHandler == null) return; // 动画已被停止
+    public static int getRuntimeScaledFrameCount() {
+        return runtimeScaledFrameCount.get();
+    }
+    
+    /**
+     * 循环播放帧序列的动画轨道（跑步）
+     */
+    private class FrameLoopTrack implements WidgetAnimationScheduler.AnimationTrack {
+        private final Context context;
+        private final int widgetId;
+        private final int[] frames;
+        private final int frameInterval;
+        private int currentFrame = 0;
+        
+        FrameLoopTrack(Context context, int widgetId, int[] frames, int frameInterval) {
+            this.context = context;
+            this.widgetId = widgetId;
+            this.frames = frames;
+            this.frameInterval = frameInterval;
+        }
         
-        // 随机等待时间：1-2秒
-        int waitTime = (int)(1000 + Math.random() * 1000); // 1000-2000ms
-        // Log.d(TAG, "等待" + waitTime + "ms后播放下一个左右看动画");
+        @Override
+        public void renderFrame() {
+            showSingleFrame(context, widgetId, frames[currentFrame]);
+        }
         
-        currentAnimationHandler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                startLookCycle(context, widgetId, lookAnimations);
-            }
-        }, waitTime);
+        @Override
+        public long advance() {
+            currentFrame = (currentFrame + 1) % frames.length;
+            return frameInterval;
+        }
     }
     
     /**
-     * 设置跑步状态
+     * 左右看循环的动画轨道
+     * 随机左看或右看：frame1 -> frame2 -> frame1，然后等待1-2秒进入下一轮
      */
-    private void setState_Run(Context context, int widgetId, String prefabName) {
-        // 获取跑步动画帧
-        int run1 = PetImageHelper.getSingleFrame(context, prefabName, "run_1");
-        int run2 = PetImageHelper.getSingleFrame(context, prefabName, "run_2");
-        int run3 = PetImageHelper.getSingleFrame(context, prefabName, "run_3");
-        int run4 = PetImageHelper.getSingleFrame(context, prefabName, "run_4");
-        
-        if (run1 == 0 || run2 == 0 || run3 == 0 || run4 == 0) {
-            Log.w(TAG, "找不到跑步动画帧，使用坐下状态");
-            setState_Sit(context, widgetId, prefabName);
-            return;
+    private class LookCycleTrack implements WidgetAnimationScheduler.AnimationTrack {
+        private final Context context;
+        private final int widgetId;
+        private final int[][] lookAnimations;
+        private int[] sequence;
+        private int index;
+        
+        LookCycleTrack(Context context, int widgetId, int[][] lookAnimations) {
+            this.context = context;
+            this.widgetId = widgetId;
+            this.lookAnimations = lookAnimations;
+            nextCycle();
         }
         
-        int[] runFrames = {run1, run2, run3, run4};
-        currentAnimationHandler = new Handler(Looper.getMainLooper());
-        final int[] currentFrame = {0};
+        private void nextCycle() {
+            // 随机选择左看或右看（0=左看，1=右看）
+            int randomDirection = (int)(Math.random() * 2);
+            int[] selectedAnimation = lookAnimations[randomDirection];
+            sequence = new int[]{selectedAnimation[0], selectedAnimation[1], selectedAnimation[0]};
+            index = 0;
+        }
         
-        Runnable runAnimation = new Runnable() {
-            @Override
-            public void run() {
-                if (currentAnimationHandler == null) return; // 动画已被停止
-                
-                showSingleFrame(context, widgetId, runFrames[currentFrame[0]]);
-                currentFrame[0] = (currentFrame[0] + 1) % runFrames.length;
-                
-                // 继续下一帧
-                currentAnimationHandler.postDelayed(this, 5); // 动画播放速度
-            }
-        };
+        @Override
+        public void renderFrame() {
+            showSingleFrame(context, widgetId, sequence[index]);
+        }
         
-        // 开始循环动画
-        currentAnimationHandler.post(runAnimation);
-        // Log.d(TAG, "开始跑步循环动画");
+        @Override
+        public long advance() {
+            if (index < sequence.length - 1) {
+                index++;
+                return LOOK_FRAME_INTERVAL;
+            }
+            
+            // 最后一帧后等待随机时间（1-2秒），然后继续下一个循环
+            nextCycle();
+            return (long)(1000 + Math.random() * 1000);
+        }
     }
     
     /**
@@ -912,95 +1230,29 @@ public class DigiAnimalWidgetProvider extends AppWidgetProvider {
         // Log.d(TAG, "恢复默认状态: " + widgetId);
         
         // 停止当前动画
-        stopCurrentAnimation();
+        stopCurrentAnimation(widgetId);
         
         // 获取保存的状态，如果没有则默认为坐下
-        String currentState = getWidgetState(context);
+        String currentState = getWidgetState(context, widgetId);
         
-        WidgetData widgetData = loadWidgetData(context);
-        if (widgetData != null && widgetData.selectedPetData != null) {
+        PetSnapshot petSnapshot = WidgetDataProvider.getInstance(context).getSnapshot();
+        if (petSnapshot.source != PetSnapshot.SOURCE_DEFAULT) {
             // 根据保存的状态恢复
             if (STATE_RUN.equals(currentState)) {
-                setState_Run(context, widgetId, widgetData.selectedPetData.prefabName);
+                setState_Run(context, widgetId, petSnapshot.petType);
             } else if (STATE_LOOK.equals(currentState)) {
                 // 左右看状态恢复为静态的左看或右看帧
-                setState_Sit(context, widgetId, widgetData.selectedPetData.prefabName);
+                setState_Sit(context, widgetId, petSnapshot.petType);
             } else {
-                setState_Sit(context, widgetId, widgetData.selectedPetData.prefabName);
+                setState_Sit(context, widgetId, petSnapshot.petType);
             }
             
             // 更新按钮状态
             updateAllButtonStates(context, widgetId);
         } else {
             // 备用方案
-            updateWidget(context, appWidgetManager, widgetId);
-        }
-    }
-    
-    /**
-     * 设置定期更新（每分钟）
-     */
-    private void setupPeriodicUpdate(Context context) {
-        try {
-            android.app.AlarmManager alarmManager = (android.app.AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-            if (alarmManager == null) {
-                Log.e(TAG, "无法获取AlarmManager");
-                return;
-            }
-            
-            Intent intent = new Intent(context, DigiAnimalWidgetProvider.class);
-            intent.setAction(ACTION_PERIODIC_UPDATE);
-            
-            android.app.PendingIntent pendingIntent = android.app.PendingIntent.getBroadcast(
-                context, 0, intent, 
-                android.app.PendingIntent.FLAG_UPDATE_CURRENT | android.app.PendingIntent.FLAG_IMMUTABLE
-            );
-            
-            // 每分钟更新一次 (60 * 1000 = 60000毫秒)
-            long intervalMillis = 60 * 1000;
-            long firstTimeMillis = System.currentTimeMillis() + intervalMillis;
-            
-            // 使用setRepeating设置重复闹钟
-            alarmManager.setRepeating(
-                android.app.AlarmManager.RTC_WAKEUP,
-                firstTimeMillis,
-                intervalMillis,
-                pendingIntent
-            );
-            
-            Log.d(TAG, "定期更新已设置: 每分钟更新一次");
-            
-        } catch (Exception e) {
-            Log.e(TAG, "设置定期更新失败: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * 取消定期更新
-     */
-    private void cancelPeriodicUpdate(Context context) {
-        try {
-            android.app.AlarmManager alarmManager = (android.app.AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-            if (alarmManager == null) {
-                Log.e(TAG, "无法获取AlarmManager");
-                return;
-            }
-            
-            Intent intent = new Intent(context, DigiAnimalWidgetProvider.class);
-            intent.setAction(ACTION_PERIODIC_UPDATE);
-            
-            android.app.PendingIntent pendingIntent = android.app.PendingIntent.getBroadcast(
-                context, 0, intent, 
-                android.app.PendingIntent.FLAG_UPDATE_CURRENT | android.app.PendingIntent.FLAG_IMMUTABLE
-            );
-            
-            alarmManager.cancel(pendingIntent);
-            pendingIntent.cancel();
-            
-            Log.d(TAG, "定期更新已取消");
-            
-        } catch (Exception e) {
-            Log.e(TAG, "取消定期更新失败: " + e.getMessage());
+            WidgetUpdateCoalescer.getInstance().request(context, new int[]{widgetId},
+                    WidgetUpdateCoalescer.DATA_NONE, null);
         }
     }
     
@@ -0,0 +1,37 @@
+package com.zher.meow.widget;
+
+/**
+ * 帧率控制器
+ * 限制单个动画的最大帧率；渲染、合并和丢弃的帧数由WidgetAnimationScheduler统一统计
+ */
+public class FrameRateGovernor {
+    private final long frameBudgetMs;
+
+    // 下一次允许渲染的时间（uptime毫秒）
+    private long nextFrameTime = 0;
+
+    public FrameRateGovernor(int maxFps) {
+        this.frameBudgetMs = Math.max(1, 1000 / Math.max(1, maxFps));
+    }
+
+    /**
+     * 当前时间是否已经超出上一帧的帧预算，可以渲染新的一帧
+     */
+    public boolean canRender(long now) {
+        return now >= nextFrameTime;
+    }
+
+    /**
+     * 下一次允许渲染的时间
+     */
+    public long getNextFrameTime() {
+        return nextFrameTime;
+    }
+
+    /**
+     * 记录一次渲染，开始新的帧预算
+     */
+    public void onFrameRendered(long now) {
+        nextFrameTime = now + frameBudgetMs;
+    }
+}
@@ -9,13 +9,13 @@ import android.util.Log;
 public class OfflineCalculator {
     private static final String TAG = "OfflineCalculator";
     
-    // 游戏规则常量 (测试配置 - 加速衰减)
-    private static final long ENERGY_DECAY_INTERVAL = 648; // 精力每5秒降低1点 (测试用)
-    private static final long SATIETY_DECAY_INTERVAL = 432; // 饱食每5秒降低1点 (测试用)
-    private static final long BORED_RESET_INTERVAL = 600; // isBored在30秒后重置为false (测试用)
+    // 状态文本阈值：精力/饱食不高于该值时显示"好困…"/"好饿…"
+    public static final int SLEEPY_THRESHOLD = 10;
+    public static final int HUNGRY_THRESHOLD = 10;
     
     /**
      * 根据基准数据计算当前宠物状态
+     * 衰减规则来自DecayRules，按宠物预制体选择
      */
     public static PetData calculateCurrentStats(OfflineDataManager.OfflineBaseData baseData, long currentTime) {
         if (baseData == null) {
@@ -32,10 +32,12 @@ public class OfflineCalculator {
             elapsedSeconds = 0;
         }
         
-        // 计算当前数值
-        int currentEnergy = calculateEnergyDecay(baseData.baseEnergy, elapsedSeconds);
-        int currentSatiety = calculateSatietyDecay(baseData.baseSatiety, elapsedSeconds);
-        boolean currentIsBored = calculateBoredStatus(baseData.baseIsBored, elapsedSeconds);
+        // 计算当前数值（精力在睡眠时段不衰减）
+        DecayRules.Profile rules = DecayRules.current().forPet(baseData.prefabName);
+        long energySeconds = rules.energyElapsedMillis(baseData.baseTimestamp, currentTime) / 1000;
+        int currentEnergy = rules.energy.valueAfter(baseData.baseEnergy, energySeconds);
+        int currentSatiety = rules.satiety.valueAfter(baseData.baseSatiety, elapsedSeconds);
+        boolean currentIsBored = baseData.baseIsBored && elapsedSeconds < rules.boredResetSeconds;
         
         // 创建计算结果
         PetData result = new PetData();
@@ -60,36 +62,138 @@ public class OfflineCalculator {
     }
     
     /**
-     * 计算精力衰减
-     * 每648秒降低1点，最小值为0
+     * 计算精力衰减（默认规则，不考虑睡眠时段）
      */
     public static int calculateEnergyDecay(int baseEnergy, long elapsedSeconds) {
-        int decay = (int) (elapsedSeconds / ENERGY_DECAY_INTERVAL);
-        int currentEnergy = baseEnergy - decay;
-        return Math.max(0, currentEnergy); // 确保不为负数
+        return DecayRules.current().getDefaultProfile().energy.valueAfter(baseEnergy, elapsedSeconds);
     }
     
     /**
-     * 计算饱食衰减
-     * 每432秒降低1点，最小值为0
+     * 计算饱食衰减（默认规则）
      */
     public static int calculateSatietyDecay(int baseSatiety, long elapsedSeconds) {
-        int decay = (int) (elapsedSeconds / SATIETY_DECAY_INTERVAL);
-        int currentSatiety = baseSatiety - decay;
-        return Math.max(0, currentSatiety); // 确保不为负数
+        return DecayRules.current().getDefaultProfile().satiety.valueAfter(baseSatiety, elapsedSeconds);
     }
     
     /**
-     * 计算isBored状态
-     * 600秒后重置为false，之后不会重新变为true
+     * 计算isBored状态（默认规则）
+     * 重置时间后变为false，之后不会重新变为true
      */
     public static boolean calculateBoredStatus(boolean baseIsBored, long elapsedSeconds) {
         if (!baseIsBored) {
             return false; // 如果基准状态就是false，保持false
         }
         
-        // 如果基准状态是true，600秒后重置为false
-        return elapsedSeconds < BORED_RESET_INTERVAL;
+        return elapsedSeconds < DecayRules.current().getDefaultProfile().boredResetSeconds;
+    }
+    
+    /**
+     * 计算下一次显示数值发生变化的时间
+     * 精力、饱食每降1点变化一次，无聊状态只在重置时变化一次；
+     * 状态文本完全由这三个值决定，不会在其他时间点变化
+     * @return 毫秒时间戳，之后不会再变化时返回-1
+     */
+    public static long getNextChangeTime(OfflineDataManager.OfflineBaseData baseData, long currentTime) {
+        if (baseData == null) {
+            return -1;
+        }
+        
+        DecayRules.Profile rules = DecayRules.current().forPet(baseData.prefabName);
+        long base = baseData.baseTimestamp;
+        long elapsedSeconds = Math.max(0, (currentTime - base) / 1000);
+        long energySeconds = rules.energyElapsedMillis(base, currentTime) / 1000;
+        boolean bored = baseData.baseIsBored && elapsedSeconds < rules.boredResetSeconds;
+        return nextChangeTime(rules, baseData.baseEnergy, baseData.baseSatiety, bored, base,
+                elapsedSeconds, energySeconds);
+    }
+    
+    /**
+     * 闭式计算下一次显示变化的时间（getNextChangeTime和批量计算共用）
+     * @param bored 当前是否无聊（基准时无聊且还没到重置时间）
+     * @param elapsedSeconds 从基准时间起经过的秒数
+     * @param energySeconds 精力衰减计时的秒数（睡眠时段不计）
+     * @return 毫秒时间戳，之后不会再变化时返回-1
+     */
+    static long nextChangeTime(DecayRules.Profile rules, int baseEnergy, int baseSatiety, boolean bored,
+                               long base, long elapsedSeconds, long energySeconds) {
+        long next = Long.MAX_VALUE;
+        long energyStep = rules.energy.nextStepSeconds(baseEnergy, energySeconds);
+        if (energyStep >= 0) {
+            next = minTime(next, rules.energyTimeAfter(base, energyStep * 1000));
+        }
+        long satietyStep = rules.satiety.nextStepSeconds(baseSatiety, elapsedSeconds);
+        if (satietyStep >= 0) {
+            next = minTime(next, base + satietyStep * 1000);
+        }
+        if (bored) {
+            next = minTime(next, base + rules.boredResetSeconds * 1000);
+        }
+        return next == Long.MAX_VALUE ? -1 : next;
+    }
+    
+    /**
+     * 预测精力降到threshold及以下的时间（直接查表，不做模拟）
+     * @return 毫秒时间戳；基准时已经满足返回基准时间，永远不会满足返回-1
+     */
+    public static long getEnergyReachTime(OfflineDataManager.OfflineBaseData baseData, int threshold) {
+        if (baseData == null) {
+            return -1;
+        }
+        DecayRules.Profile rules = DecayRules.current().forPet(baseData.prefabName);
+        long seconds = rules.energy.secondsUntil(baseData.baseEnergy, threshold);
+        if (seconds < 0) {
+            return -1;
+        }
+        return rules.energyTimeAfter(baseData.baseTimestamp, seconds * 1000);
+    }
+    
+    /**
+     * 预测饱食降到threshold及以下的时间
+     * @return 毫秒时间戳；基准时已经满足返回基准时间，永远不会满足返回-1
+     */
+    public static long getSatietyReachTime(OfflineDataManager.OfflineBaseData baseData, int threshold) {
+        if (baseData == null) {
+            return -1;
+        }
+        DecayRules.Profile rules = DecayRules.current().forPet(baseData.prefabName);
+        long seconds = rules.satiety.secondsUntil(baseData.baseSatiety, threshold);
+        if (seconds < 0) {
+            return -1;
+        }
+        return baseData.baseTimestamp + seconds * 1000;
+    }
+    
+    /**
+     * 预测开始显示"好困…"的时间
+     */
+    public static long getSleepyTime(OfflineDataManager.OfflineBaseData baseData) {
+        return getEnergyReachTime(baseData, SLEEPY_THRESHOLD);
+    }
+    
+    /**
+     * 预测开始显示"好饿…"的时间
+     */
+    public static long getHungryTime(OfflineDataManager.OfflineBaseData baseData) {
+        return getSatietyReachTime(baseData, HUNGRY_THRESHOLD);
+    }
+    
+    /**
+     * 预测无聊状态重置的时间
+     * @return 毫秒时间戳，基准状态不是无聊时返回-1
+     */
+    public static long getBoredResetTime(OfflineDataManager.OfflineBaseData baseData) {
+        if (baseData == null || !baseData.baseIsBored) {
+            return -1;
+        }
+        DecayRules.Profile rules = DecayRules.current().forPet(baseData.prefabName);
+        return baseData.baseTimestamp + rules.boredResetSeconds * 1000;
+    }
+    
+    /**
+     * 取较早的时间，-1表示不会发生
+     */
+    private static long minTime(long current, long candidate) {
+        return candidate < 0 ? current : Math.min(current, candidate);
     }
     
     /**
@@ -146,13 +250,4 @@ public class OfflineCalculator {
         
         return true;
     }
-    
-    /**
-     * 获取游戏规则常量（用于调试和测试）
-     */
-    public static class GameRules {
-        public static final long ENERGY_DECAY_INTERVAL_SECONDS = ENERGY_DECAY_INTERVAL;
-        public static final long SATIETY_DECAY_INTERVAL_SECONDS = SATIETY_DECAY_INTERVAL;
-        public static final long BORED_RESET_INTERVAL_SECONDS = BORED_RESET_INTERVAL;
-    }
 }
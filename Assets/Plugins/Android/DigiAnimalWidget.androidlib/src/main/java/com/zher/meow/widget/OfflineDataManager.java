@@ -1,31 +1,65 @@
 package com.zher.meow.widget;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.res.Configuration;
 import android.util.Log;
 
 /**
  * 离线数据管理器
  * 负责存储和读取离线计算的基准数据
+ * 数据存放在WidgetStateStore的离线基准分区中
+ * 最后离线计算时间只记在内存里，每小时或进程转入后台时才写盘，读取路径不产生磁盘写入
  */
 public class OfflineDataManager {
     private static final String TAG = "OfflineDataManager";
-    private static final String PREFS_NAME = "widget_offline_data";
     
-    // SharedPreferences键名
-    private static final String KEY_BASE_ENERGY = "offline_base_energy";
-    private static final String KEY_BASE_SATIETY = "offline_base_satiety";
-    private static final String KEY_BASE_IS_BORED = "offline_base_is_bored";
-    private static final String KEY_BASE_TIMESTAMP = "offline_base_timestamp";
-    private static final String KEY_LAST_CALCULATION_TIME = "offline_last_calculation_time";
-    private static final String KEY_PET_ID = "offline_pet_id";
-    private static final String KEY_PET_NAME = "offline_pet_name";
-    private static final String KEY_PREFAB_NAME = "offline_prefab_name";
+    // 最后离线计算时间的最长写盘间隔
+    private static final long CALCULATION_TIME_FLUSH_INTERVAL = 60 * 60 * 1000;
     
-    private SharedPreferences prefs;
+    private WidgetStateStore store;
+    
+    // 还没有写盘的最后离线计算时间，0表示没有
+    private long pendingCalculationTime = 0;
+    private long lastFlushTime = System.currentTimeMillis();
     
     public OfflineDataManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        store = WidgetStateStore.getInstance(context);
+        
+        // 进程转入后台时把内存中的计算时间写盘
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                    flushOfflineTimestamp();
+                }
+            }
+            
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+            
+            @Override
+            public void onLowMemory() {
+                flushOfflineTimestamp();
+            }
+        });
+    }
+    
+    /**
+     * 根据宠物数据创建离线基准数据
+     */
+    public static OfflineBaseData createBaseData(PetData petData, long timestamp) {
+        OfflineBaseData data = new OfflineBaseData();
+        data.petId = petData.petId;
+        data.petName = petData.petName;
+        data.prefabName = petData.prefabName;
+        data.baseEnergy = petData.energy;
+        data.baseSatiety = petData.satiety;
+        data.baseIsBored = petData.isBored;
+        data.baseTimestamp = timestamp;
+        data.lastCalculationTime = timestamp;
+        return data;
     }
     
     /**
@@ -33,16 +67,11 @@ public class OfflineDataManager {
      */
     public void saveOfflineBaseData(PetData petData, long timestamp) {
         try {
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putString(KEY_PET_ID, petData.petId);
-            editor.putString(KEY_PET_NAME, petData.petName);
-            editor.putString(KEY_PREFAB_NAME, petData.prefabName);
-            editor.putInt(KEY_BASE_ENERGY, petData.energy);
-            editor.putInt(KEY_BASE_SATIETY, petData.satiety);
-            editor.putBoolean(KEY_BASE_IS_BORED, petData.isBored);
-            editor.putLong(KEY_BASE_TIMESTAMP, timestamp);
-            editor.putLong(KEY_LAST_CALCULATION_TIME, timestamp);
-            editor.apply();
+            OfflineBaseData data = createBaseData(petData, timestamp);
+            synchronized (this) {
+                pendingCalculationTime = 0;
+            }
+            store.begin().putBaseline(data).commit();
             
             // Log.d(TAG, "离线基准数据已保存: " + petData.petName + 
             //       ", 精力=" + petData.energy + ", 饱食=" + petData.satiety + 
@@ -57,20 +86,10 @@ public class OfflineDataManager {
      */
     public OfflineBaseData loadOfflineBaseData() {
         try {
-            if (!hasOfflineBaseData()) {
-                return null;
+            OfflineBaseData data = store.loadBaseline();
+            if (data != null) {
+                data.lastCalculationTime = Math.max(data.lastCalculationTime, getPendingCalculationTime());
             }
-            
-            OfflineBaseData data = new OfflineBaseData();
-            data.petId = prefs.getString(KEY_PET_ID, "");
-            data.petName = prefs.getString(KEY_PET_NAME, "我的宠物");
-            data.prefabName = prefs.getString(KEY_PREFAB_NAME, "Pet_CatBrown");
-            data.baseEnergy = prefs.getInt(KEY_BASE_ENERGY, 100);
-            data.baseSatiety = prefs.getInt(KEY_BASE_SATIETY, 100);
-            data.baseIsBored = prefs.getBoolean(KEY_BASE_IS_BORED, false);
-            data.baseTimestamp = prefs.getLong(KEY_BASE_TIMESTAMP, System.currentTimeMillis());
-            data.lastCalculationTime = prefs.getLong(KEY_LAST_CALCULATION_TIME, System.currentTimeMillis());
-            
             return data;
         } catch (Exception e) {
             Log.e(TAG, "加载离线基准数据失败: " + e.getMessage());
@@ -80,15 +99,41 @@ public class OfflineDataManager {
     
     /**
      * 更新最后离线计算时间
+     * 只更新内存，距离上次写盘超过一小时才写盘
      */
     public void updateOfflineTimestamp(long timestamp) {
+        boolean flush;
+        synchronized (this) {
+            pendingCalculationTime = Math.max(pendingCalculationTime, timestamp);
+            flush = timestamp - lastFlushTime >= CALCULATION_TIME_FLUSH_INTERVAL;
+        }
+        
+        // Log.d(TAG, "离线计算时间已更新: " + timestamp);
+        if (flush) {
+            flushOfflineTimestamp();
+        }
+    }
+    
+    /**
+     * 把内存中的最后离线计算时间写盘
+     */
+    public void flushOfflineTimestamp() {
+        long timestamp;
+        synchronized (this) {
+            timestamp = pendingCalculationTime;
+            pendingCalculationTime = 0;
+            lastFlushTime = System.currentTimeMillis();
+        }
+        if (timestamp == 0) {
+            return;
+        }
+        
         try {
-            long oldTimestamp = prefs.getLong(KEY_LAST_CALCULATION_TIME, 0);
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putLong(KEY_LAST_CALCULATION_TIME, timestamp);
-            editor.apply();
-            
-            // Log.d(TAG, "离线计算时间已更新: " + oldTimestamp + " -> " + timestamp);
+            // 期间基准数据可能已经被游戏数据覆盖，不能把计算时间写回旧值
+            OfflineBaseData stored = store.loadBaseline();
+            if (stored != null && timestamp > stored.lastCalculationTime) {
+                store.begin().putLastCalculationTime(timestamp).commit();
+            }
         } catch (Exception e) {
             Log.e(TAG, "更新离线计算时间失败: " + e.getMessage());
         }
@@ -98,16 +143,22 @@ public class OfflineDataManager {
      * 获取最后离线计算时间
      */
     public long getLastOfflineCalculationTime() {
-        return prefs.getLong(KEY_LAST_CALCULATION_TIME, 0);
+        OfflineBaseData data = store.loadBaseline();
+        if (data == null) {
+            return 0;
+        }
+        return Math.max(data.lastCalculationTime, getPendingCalculationTime());
+    }
+    
+    private synchronized long getPendingCalculationTime() {
+        return pendingCalculationTime;
     }
     
     /**
      * 检查是否有离线基准数据
      */
     public boolean hasOfflineBaseData() {
-        return prefs.contains(KEY_BASE_TIMESTAMP) && 
-               prefs.contains(KEY_BASE_ENERGY) && 
-               prefs.contains(KEY_BASE_SATIETY);
+        return store.hasBaseline();
     }
     
     /**
@@ -115,9 +166,10 @@ public class OfflineDataManager {
      */
     public void clearOfflineData() {
         try {
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.clear();
-            editor.apply();
+            synchronized (this) {
+                pendingCalculationTime = 0;
+            }
+            store.begin().clearBaseline().commit();
             // Log.d(TAG, "离线数据已清除");
         } catch (Exception e) {
             Log.e(TAG, "清除离线数据失败: " + e.getMessage());
@@ -0,0 +1,381 @@
+package com.zher.meow.widget;
+
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 离线事件模拟器
+ * 闭式计算只能处理互不影响的衰减；睡眠期间精力恢复、无聊重置后再次变得无聊、年龄按天增长这些规则
+ * 会互相影响（恢复会重新开始衰减计时，睡眠中不会变得无聊），由这里按时间顺序逐个事件推进。
+ * 每一步直接跳到最近的下一个事件（精力/饱食变化1点、入睡/醒来、无聊切换、年龄加1），
+ * 耗时只和事件数有关，和离线时长无关：离线30天约几千个事件，在onReceive里几毫秒内完成
+ */
+public final class OfflineSimulator {
+    private static final String TAG = "OfflineSimulator";
+
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // 事件数上限，防止规则异常时死循环
+    private static final int MAX_EVENTS = 1000000;
+    // 阈值预测最多模拟到基准时间之后多久，之后才会发生的按不会发生（-1）处理
+    public static final long PREDICTION_HORIZON_MILLIS = 30 * DAY_MILLIS;
+
+    // 购买日期格式，与Unity一致
+    private static final String PURCHASE_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    // 统计
+    private static volatile int lastEventCount = 0;
+    private static volatile long lastElapsedNanos = 0;
+
+    private OfflineSimulator() {
+    }
+
+    /**
+     * 模拟结果：currentTime时的数值和之后第一次显示变化的时间
+     */
+    public static final class Result {
+        public int energy;
+        public int satiety;
+        public boolean isBored;
+        public int ageInDays;
+        // 毫秒时间戳，之后不会再变化时为-1
+        public long nextChangeTime;
+        // 本次处理的事件数
+        public int eventCount;
+    }
+
+    /**
+     * 阈值预测结果，时间均为毫秒时间戳；基准时已经满足为基准时间，
+     * 在PREDICTION_HORIZON_MILLIS内不会发生为-1
+     */
+    public static final class Predictions {
+        // 与传入的阈值一一对应：精力/饱食第一次降到阈值及以下的时间
+        public final long[] energyReachTimes;
+        public final long[] satietyReachTimes;
+        // 基准状态为无聊时，无聊重置的时间；基准状态不是无聊时为-1（与OfflineCalculator.getBoredResetTime一致）
+        public long boredResetTime = -1;
+
+        private final int[] energyThresholds;
+        private final int[] satietyThresholds;
+        // 还在等待基准时的无聊状态重置
+        private boolean boredResetPending;
+
+        Predictions(int[] energyThresholds, int[] satietyThresholds, boolean baseIsBored) {
+            this.energyThresholds = energyThresholds;
+            this.satietyThresholds = satietyThresholds;
+            this.boredResetPending = baseIsBored;
+            this.energyReachTimes = new long[energyThresholds.length];
+            this.satietyReachTimes = new long[satietyThresholds.length];
+            Arrays.fill(energyReachTimes, -1);
+            Arrays.fill(satietyReachTimes, -1);
+        }
+
+        void record(long time, int energy, int satiety) {
+            for (int i = 0; i < energyThresholds.length; i++) {
+                if (energyReachTimes[i] < 0 && energy <= energyThresholds[i]) {
+                    energyReachTimes[i] = time;
+                }
+            }
+            for (int i = 0; i < satietyThresholds.length; i++) {
+                if (satietyReachTimes[i] < 0 && satiety <= satietyThresholds[i]) {
+                    satietyReachTimes[i] = time;
+                }
+            }
+        }
+
+        void recordBoredReset(long time) {
+            if (boredResetPending) {
+                boredResetTime = time;
+                boredResetPending = false;
+            }
+        }
+
+        boolean isComplete() {
+            if (boredResetPending) {
+                return false;
+            }
+            for (long time : energyReachTimes) {
+                if (time < 0) {
+                    return false;
+                }
+            }
+            for (long time : satietyReachTimes) {
+                if (time < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 从基准数据模拟到currentTime
+     * @param purchaseTime 购买时间（毫秒时间戳），不知道时传0，年龄保持baseAgeInDays
+     */
+    public static Result simulate(OfflineDataManager.OfflineBaseData baseData, long purchaseTime,
+                                  int baseAgeInDays, long currentTime) {
+        return run(baseData, purchaseTime, baseAgeInDays, currentTime, null);
+    }
+
+    /**
+     * 从基准时间开始模拟，记录精力、饱食第一次降到各个阈值及以下的时间和基准时无聊状态的重置时间，
+     * 全部记录到就提前结束。
+     * 与小组件显示使用同一套事件推进（睡眠恢复、再次无聊都计算在内），最多模拟PREDICTION_HORIZON_MILLIS
+     */
+    public static Predictions predict(OfflineDataManager.OfflineBaseData baseData,
+                                      int[] energyThresholds, int[] satietyThresholds) {
+        Predictions predictions = new Predictions(energyThresholds, satietyThresholds, baseData.baseIsBored);
+        // 年龄不影响阈值，不模拟年龄事件
+        run(baseData, 0, 1, baseData.baseTimestamp + PREDICTION_HORIZON_MILLIS, predictions);
+        return predictions;
+    }
+
+    /**
+     * @param watch 不为null时在每个事件后记录阈值，并且不计入统计
+     */
+    private static Result run(OfflineDataManager.OfflineBaseData baseData, long purchaseTime,
+                              int baseAgeInDays, long currentTime, Predictions watch) {
+        long startNanos = System.nanoTime();
+        DecayRules.Profile rules = DecayRules.current().forPet(baseData.prefabName);
+        DecayRules.SleepWindow sleep = rules.sleep;
+        long recoveryMillis = sleep != null ? rules.energyRecoverySeconds * 1000 : 0;
+        long resetMillis = rules.boredResetSeconds * 1000;
+        long retriggerMillis = rules.boredRetriggerSeconds * 1000;
+
+        long base = baseData.baseTimestamp;
+        long t = base;
+        int energy = clamp(baseData.baseEnergy);
+        int satiety = clamp(baseData.baseSatiety);
+
+        // 精力计时：清醒时累计衰减计时，睡眠时累计恢复计时，精力每变化1点两者都从0开始
+        // 整段模拟使用基准时间的时区偏移，与闭式计算（DecayRules.Profile）一致
+        long zoneOffset = sleep != null ? sleep.offsetAt(t) : 0;
+        boolean sleeping = sleep != null && sleep.isSleeping(t, zoneOffset);
+        long boundaryAt = sleep != null ? sleep.nextBoundaryAfter(t, zoneOffset) : NEVER;
+        long awakeMillis = 0;
+        long asleepMillis = 0;
+
+        boolean bored = baseData.baseIsBored;
+        long boredAt = bored ? t + resetMillis : (retriggerMillis > 0 ? t + retriggerMillis : NEVER);
+
+        // 年龄与Unity一致：购买后每满24小时加1，最小为1
+        int age;
+        long ageAt;
+        if (purchaseTime > 0) {
+            long days = Math.max(0, Math.floorDiv(t - purchaseTime, DAY_MILLIS));
+            age = (int) days + 1;
+            ageAt = purchaseTime + (days + 1) * DAY_MILLIS;
+        } else {
+            age = Math.max(1, baseAgeInDays);
+            ageAt = NEVER;
+        }
+
+        long satietyAt = satietyStepTime(rules, baseData.baseSatiety, base, t);
+
+        Result result = new Result();
+        boolean captured = false;
+        int events = 0;
+        if (watch != null) {
+            watch.record(t, energy, satiety);
+        }
+        while (true) {
+            long energyAt = NEVER;
+            if (sleeping) {
+                if (recoveryMillis > 0 && energy < rules.energyRecoverTo) {
+                    energyAt = t + recoveryMillis - asleepMillis;
+                }
+            } else {
+                long step = rules.energy.stepSeconds(energy);
+                if (step > 0) {
+                    energyAt = t + step * 1000 - awakeMillis;
+                }
+            }
+
+            long next = Math.min(Math.min(energyAt, satietyAt), Math.min(Math.min(boredAt, ageAt), boundaryAt));
+
+            if (!captured && next > currentTime) {
+                result.energy = energy;
+                result.satiety = satiety;
+                result.isBored = bored;
+                result.ageInDays = age;
+                result.nextChangeTime = -1;
+                captured = true;
+            }
+
+            // 只剩入睡/醒来而精力在两种状态下都不会再变化时，显示内容不会再变
+            if (next == NEVER || (energyAt == NEVER && satietyAt == NEVER && boredAt == NEVER && ageAt == NEVER
+                    && !canEnergyChange(rules, energy, !sleeping, recoveryMillis))) {
+                break;
+            }
+            if (++events > MAX_EVENTS) {
+                Log.w(TAG, "离线模拟事件数超过上限，停止模拟");
+                break;
+            }
+
+            if (sleeping) {
+                asleepMillis += next - t;
+            } else {
+                awakeMillis += next - t;
+            }
+            t = next;
+            boolean changed = false;
+
+            // 同一时间点的事件按 精力、饱食、年龄、入睡/醒来、无聊 的顺序处理：
+            // 精力按到达时的状态结算，醒来时刚好到期的无聊在醒来后生效
+            if (energyAt == t) {
+                energy += sleeping ? 1 : -1;
+                awakeMillis = 0;
+                asleepMillis = 0;
+                changed = true;
+            }
+            if (satietyAt == t) {
+                satiety = rules.satiety.valueAfter(baseData.baseSatiety, (t - base) / 1000);
+                satietyAt = satietyStepTime(rules, baseData.baseSatiety, base, t);
+                changed = true;
+            }
+            if (ageAt == t) {
+                age++;
+                ageAt += DAY_MILLIS;
+                changed = true;
+            }
+            if (boundaryAt == t) {
+                sleeping = !sleeping;
+                asleepMillis = 0;
+                boundaryAt = sleep.nextBoundaryAfter(t, zoneOffset);
+            }
+            if (boredAt == t) {
+                if (bored) {
+                    bored = false;
+                    if (watch != null) {
+                        watch.recordBoredReset(t);
+                    }
+                    boredAt = retriggerMillis > 0 ? t + retriggerMillis : NEVER;
+                    changed = true;
+                } else if (sleeping) {
+                    // 睡眠中不会变得无聊，推迟到醒来
+                    boredAt = boundaryAt;
+                } else {
+                    bored = true;
+                    boredAt = t + resetMillis;
+                    changed = true;
+                }
+            }
+
+            if (watch != null && changed && t <= currentTime) {
+                watch.record(t, energy, satiety);
+                if (watch.isComplete()) {
+                    break;
+                }
+            }
+            if (captured && changed) {
+                result.nextChangeTime = t;
+                break;
+            }
+        }
+
+        if (!captured) {
+            result.energy = energy;
+            result.satiety = satiety;
+            result.isBored = bored;
+            result.ageInDays = age;
+            result.nextChangeTime = -1;
+        }
+        result.eventCount = events;
+
+        if (watch == null) {
+            lastEventCount = events;
+            lastElapsedNanos = System.nanoTime() - startNanos;
+        }
+        return result;
+    }
+
+    /**
+     * 从基准数据模拟到currentTime，购买日期和年龄取自同一只宠物的游戏数据
+     * @param gameData 最近一次的游戏数据，可以为null
+     */
+    public static Result simulate(OfflineDataManager.OfflineBaseData baseData, PetData gameData, long currentTime) {
+        if (isSamePet(baseData, gameData)) {
+            return simulate(baseData, parsePurchaseTime(gameData.purchaseDate), gameData.ageInDays, currentTime);
+        }
+        return simulate(baseData, 0, 1, currentTime);
+    }
+
+    /**
+     * 把模拟结果转成宠物数据
+     * @param gameData 最近一次的游戏数据，是同一只宠物时沿用它的购买日期和介绍，可以为null
+     */
+    public static PetData toPetData(OfflineDataManager.OfflineBaseData baseData, PetData gameData,
+                                    Result state, long currentTime) {
+        boolean samePet = isSamePet(baseData, gameData);
+
+        PetData result = new PetData();
+        result.petId = baseData.petId;
+        result.petName = baseData.petName;
+        result.prefabName = baseData.prefabName;
+        result.energy = state.energy;
+        result.satiety = state.satiety;
+        result.isBored = state.isBored;
+        result.purchaseDate = samePet && gameData.purchaseDate != null ? gameData.purchaseDate : "";
+        result.ageInDays = state.ageInDays;
+        result.introduction = samePet && gameData.introduction != null ? gameData.introduction : "可爱的宠物";
+        result.lastUpdateTime = String.valueOf(currentTime);
+        return result;
+    }
+
+    /**
+     * 解析Unity的购买日期（本地时间）
+     * @return 毫秒时间戳，为空或格式错误返回0
+     */
+    public static long parsePurchaseTime(String purchaseDate) {
+        if (purchaseDate == null || purchaseDate.isEmpty()) {
+            return 0;
+        }
+        try {
+            Date date = new SimpleDateFormat(PURCHASE_DATE_FORMAT, Locale.US).parse(purchaseDate);
+            return date != null ? date.getTime() : 0;
+        } catch (Exception e) {
+            Log.w(TAG, "购买日期格式错误: " + purchaseDate);
+            return 0;
+        }
+    }
+
+    public static int getLastEventCount() {
+        return lastEventCount;
+    }
+
+    public static long getLastElapsedNanos() {
+        return lastElapsedNanos;
+    }
+
+    private static boolean isSamePet(OfflineDataManager.OfflineBaseData baseData, PetData gameData) {
+        return gameData != null && gameData.petId != null && gameData.petId.equals(baseData.petId);
+    }
+
+    /**
+     * 饱食的下一次变化时间（按经过时间直接查表）
+     */
+    private static long satietyStepTime(DecayRules.Profile rules, int baseSatiety, long base, long time) {
+        long step = rules.satiety.nextStepSeconds(baseSatiety, (time - base) / 1000);
+        return step >= 0 ? base + step * 1000 : NEVER;
+    }
+
+    /**
+     * 精力在指定状态下是否还会变化
+     */
+    private static boolean canEnergyChange(DecayRules.Profile rules, int energy, boolean sleeping,
+                                           long recoveryMillis) {
+        if (sleeping) {
+            return recoveryMillis > 0 && energy < rules.energyRecoverTo;
+        }
+        return rules.energy.stepSeconds(energy) > 0;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(value, DecayCurve.MAX_VALUE));
+    }
+}
@@ -0,0 +1,346 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 宠物帧图集
+ * 每种宠物的所有帧在构建时打包成一张图集，编码成调色板 + 游程编码的紧凑格式（build.gradle的generatePetAtlas），
+ * 帧的位置记录在二进制索引R.raw.pet_atlas_index中。每张图集在进程内只读取、解码一次，
+ * 解码不经过BitmapFactory：直接按调色板展开成int[]像素，帧从中按整数倍最近邻放大到可复用的缓冲再生成位图。
+ * 小组件优先使用构建时放大好的资源（PetFrameIndex.SCALED_RESOURCES），这里只是找不到资源时的备用方案
+ */
+public class PetAtlas {
+    private static final String TAG = "PetAtlas";
+
+    // 文件头，与build.gradle一致
+    private static final int INDEX_MAGIC = 0x5041544C; // "PATL"
+    private static final int DATA_MAGIC = 0x50415450; // "PATP"
+    private static final int VERSION = 2;
+
+    private static PetAtlas instance;
+
+    private final Context context;
+
+    // 帧句柄 -> 所属宠物类型和在图集中的位置（下标0不使用）
+    private byte[] framePetType;
+    private short[] frameX;
+    private short[] frameY;
+    private short[] frameWidth;
+    private short[] frameHeight;
+    private boolean indexLoaded = false;
+
+    // 宠物类型 -> 解码后的图集像素（ARGB，按行排列）和宽度
+    private final int[][] atlases = new int[PetFrameIndex.PET_TYPE_COUNT][];
+    private final int[] atlasWidth = new int[PetFrameIndex.PET_TYPE_COUNT];
+    // 解码失败的图集不再重试（资源在进程内不会变化）
+    private final boolean[] atlasFailed = new boolean[PetFrameIndex.PET_TYPE_COUNT];
+
+    // 复用的放大缓冲
+    private int[] scaleBuffer = new int[0];
+
+    // 统计
+    private int atlasDecodeCount = 0;
+    private int frameSliceCount = 0;
+
+    private PetAtlas(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized PetAtlas getInstance(Context context) {
+        if (instance == null) {
+            instance = new PetAtlas(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 从图集中切出一帧并整数倍放大
+     * @param frame 帧句柄（PetFrameIndex.FRAMES中的值）
+     * @return 新位图；句柄无效或解码失败时返回null
+     */
+    public synchronized Bitmap createScaledFrame(int frame, int scaleFactor) {
+        if (!isValidFrame(frame) || scaleFactor <= 0) {
+            return null;
+        }
+        int petType = framePetType[frame];
+        int[] atlas = getAtlas(petType);
+        if (atlas == null) {
+            return null;
+        }
+
+        int width = frameWidth[frame];
+        int height = frameHeight[frame];
+        int scaledWidth = width * scaleFactor;
+        int scaledHeight = height * scaleFactor;
+        if (scaleBuffer.length < scaledWidth * scaledHeight) {
+            scaleBuffer = new int[scaledWidth * scaledHeight];
+        }
+        upscale(atlas, frameY[frame] * atlasWidth[petType] + frameX[frame], atlasWidth[petType],
+                width, height, scaleFactor, scaleBuffer);
+
+        try {
+            Bitmap scaled = Bitmap.createBitmap(scaleBuffer, 0, scaledWidth,
+                    scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+            // 帧按mdpi放大，标记为基准密度才能按dp显示
+            scaled.setDensity(DisplayMetrics.DENSITY_DEFAULT);
+            frameSliceCount++;
+            return scaled;
+        } catch (Exception e) {
+            Log.e(TAG, "切分图集帧失败: " + frame + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 把一帧的原始像素复制到调用方的缓冲（ARGB，按行排列）
+     * @param pixels 长度至少为 宽 x 高
+     * @return 句柄无效、缓冲不够或解码失败时返回false
+     */
+    public synchronized boolean copyFrame(int frame, int[] pixels) {
+        if (!isValidFrame(frame) || pixels == null || pixels.length < frameWidth[frame] * frameHeight[frame]) {
+            return false;
+        }
+        int petType = framePetType[frame];
+        int[] atlas = getAtlas(petType);
+        if (atlas == null) {
+            return false;
+        }
+        int width = frameWidth[frame];
+        int stride = atlasWidth[petType];
+        int src = frameY[frame] * stride + frameX[frame];
+        for (int y = 0; y < frameHeight[frame]; y++) {
+            System.arraycopy(atlas, src + y * stride, pixels, y * width, width);
+        }
+        return true;
+    }
+
+    /**
+     * 帧宽度（像素），句柄无效时返回0
+     */
+    public synchronized int getFrameWidth(int frame) {
+        return isValidFrame(frame) ? frameWidth[frame] : 0;
+    }
+
+    /**
+     * 帧高度（像素），句柄无效时返回0
+     */
+    public synchronized int getFrameHeight(int frame) {
+        return isValidFrame(frame) ? frameHeight[frame] : 0;
+    }
+
+    /**
+     * 整数倍最近邻放大：每个源像素复制成scale x scale的方块
+     * @param offset 源区域左上角在src中的下标
+     * @param stride src每行的像素数
+     * @param dst 长度至少为 (width x scale) x (height x scale)
+     */
+    public static void upscale(int[] src, int offset, int stride, int width, int height, int scale, int[] dst) {
+        int scaledWidth = width * scale;
+        int rowStart = 0;
+        for (int y = 0; y < height; y++) {
+            int srcRow = offset + y * stride;
+            int out = rowStart;
+            for (int x = 0; x < width; x++) {
+                int color = src[srcRow + x];
+                for (int i = 0; i < scale; i++) {
+                    dst[out++] = color;
+                }
+            }
+            // 其余行直接复制第一行
+            for (int dy = 1; dy < scale; dy++) {
+                System.arraycopy(dst, rowStart, dst, rowStart + dy * scaledWidth, scaledWidth);
+            }
+            rowStart += scaledWidth * scale;
+        }
+    }
+
+    /**
+     * 释放解码后的图集和放大缓冲（内存紧张时），索引和解码失败记录保留
+     */
+    public synchronized void release() {
+        Arrays.fill(atlases, null);
+        scaleBuffer = new int[0];
+    }
+
+    public synchronized int getAtlasDecodeCount() {
+        return atlasDecodeCount;
+    }
+
+    public synchronized int getFrameSliceCount() {
+        return frameSliceCount;
+    }
+
+    /**
+     * 当前常驻的解码后图集大小（字节）
+     */
+    public synchronized long getDecodedBytes() {
+        long total = 0;
+        for (int[] atlas : atlases) {
+            if (atlas != null) {
+                total += atlas.length * 4L;
+            }
+        }
+        return total;
+    }
+
+    private boolean isValidFrame(int frame) {
+        return loadIndex() && frame > 0 && frame < framePetType.length;
+    }
+
+    private int[] getAtlas(int petType) {
+        if (petType < 0 || petType >= atlases.length) {
+            return null;
+        }
+        if (atlases[petType] == null && !atlasFailed[petType]) {
+            try {
+                atlases[petType] = decodeAtlas(petType, readResource(PetFrameIndex.ATLASES[petType]));
+            } catch (Exception e) {
+                Log.e(TAG, "解码图集失败: " + petType + ", " + e.getMessage());
+            }
+            if (atlases[petType] != null) {
+                atlasDecodeCount++;
+            } else {
+                atlasFailed[petType] = true;
+            }
+        }
+        return atlases[petType];
+    }
+
+    /**
+     * 格式：magic(int) 版本(short) 宽 高(short) 调色板颜色数-1(short) 调色板ARGB(int)...，
+     * 然后 游程长度-1(byte) 调色板下标（不超过256色时byte，否则short）... 直到填满 宽 x 高
+     * @return 解码后的像素，数据损坏时返回null
+     */
+    private int[] decodeAtlas(int petType, byte[] data) {
+        if (data.length < 12 || readInt(data, 0) != DATA_MAGIC || readShort(data, 4) != VERSION) {
+            Log.e(TAG, "图集格式不正确: " + petType);
+            return null;
+        }
+        int width = readShort(data, 6);
+        int height = readShort(data, 8);
+        int colorCount = readShort(data, 10) + 1;
+        boolean wideIndex = colorCount > 256;
+        int pos = 12;
+        if (pos + colorCount * 4 > data.length) {
+            Log.e(TAG, "图集数据损坏: " + petType);
+            return null;
+        }
+        int[] palette = new int[colorCount];
+        for (int i = 0; i < colorCount; i++) {
+            palette[i] = readInt(data, pos);
+            pos += 4;
+        }
+
+        int count = width * height;
+        int[] pixels = new int[count];
+        int entrySize = wideIndex ? 3 : 2;
+        int out = 0;
+        while (out < count) {
+            if (pos + entrySize > data.length) {
+                Log.e(TAG, "图集数据损坏: " + petType);
+                return null;
+            }
+            int run = (data[pos] & 0xFF) + 1;
+            int index = wideIndex ? readShort(data, pos + 1) : data[pos + 1] & 0xFF;
+            pos += entrySize;
+            if (index >= colorCount || out + run > count) {
+                Log.e(TAG, "图集数据损坏: " + petType);
+                return null;
+            }
+            Arrays.fill(pixels, out, out + run, palette[index]);
+            out += run;
+        }
+        atlasWidth[petType] = width;
+        return pixels;
+    }
+
+    private byte[] readResource(int resourceId) throws IOException {
+        InputStream in = context.getResources().openRawResource(resourceId);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 读取帧位置索引（只读取一次）
+     * 格式：magic(int) 版本(short) 帧数(short)，然后按帧句柄顺序每帧 类型(byte) x y 宽 高(short)
+     */
+    private boolean loadIndex() {
+        if (indexLoaded) {
+            return framePetType != null;
+        }
+        indexLoaded = true;
+
+        InputStream stream = null;
+        try {
+            stream = context.getResources().openRawResource(PetFrameIndex.ATLAS_INDEX);
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != INDEX_MAGIC || in.readUnsignedShort() != VERSION) {
+                Log.e(TAG, "图集索引格式不正确");
+                return false;
+            }
+            int frameCount = in.readUnsignedShort();
+            if (frameCount != PetFrameIndex.FRAME_COUNT) {
+                Log.e(TAG, "图集索引帧数不一致: " + frameCount + " != " + PetFrameIndex.FRAME_COUNT);
+                return false;
+            }
+
+            byte[] petTypes = new byte[frameCount + 1];
+            short[] xs = new short[frameCount + 1];
+            short[] ys = new short[frameCount + 1];
+            short[] widths = new short[frameCount + 1];
+            short[] heights = new short[frameCount + 1];
+            for (int frame = 1; frame <= frameCount; frame++) {
+                petTypes[frame] = in.readByte();
+                xs[frame] = in.readShort();
+                ys[frame] = in.readShort();
+                widths[frame] = in.readShort();
+                heights[frame] = in.readShort();
+            }
+
+            framePetType = petTypes;
+            frameX = xs;
+            frameY = ys;
+            frameWidth = widths;
+            frameHeight = heights;
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "读取图集索引失败: " + e.getMessage());
+            return false;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // 忽略
+                }
+            }
+        }
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xFF) << 24) | ((bytes[pos + 1] & 0xFF) << 16)
+                | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+    }
+
+    private static int readShort(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xFF) << 8) | (bytes[pos + 1] & 0xFF);
+    }
+}
@@ -73,14 +73,10 @@ public class PetData {
     }
     
     /**
-     * 获取宠物类型（从prefabName提取）
+     * 获取宠物类型（从prefabName提取，解析结果由PetTypeRegistry缓存）
      */
     public String getPetType() {
-        if (prefabName.contains("CatBlack")) return "Pet_CatBlack";
-        if (prefabName.contains("CatBrown")) return "Pet_CatBrown";
-        if (prefabName.contains("CatGrey")) return "Pet_CatGrey";
-        if (prefabName.contains("CatWhite")) return "Pet_CatWhite";
-        return "Pet_CatBrown"; // 默认
+        return PetTypeRegistry.getPrefabName(PetTypeRegistry.resolvePetType(prefabName));
     }
     
     @Override
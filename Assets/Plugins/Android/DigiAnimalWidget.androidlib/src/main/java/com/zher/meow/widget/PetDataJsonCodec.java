@@ -0,0 +1,516 @@
+package com.zher.meow.widget;
+
+import org.json.JSONException;
+
+/**
+ * PetData/WidgetData的JSON编解码器
+ * 读取时单遍扫描：键名用regionMatches原地比较、数字原地解析，只为字符串字段的值分配一次；
+ * 写入时直接追加到StringBuilder，不经过org.json的对象树
+ */
+public class PetDataJsonCodec {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // ========== 读取 ==========
+
+    /**
+     * 解析PetData，缺失的字段使用PetData的默认值
+     */
+    public static PetData readPetData(String json) throws JSONException {
+        Reader reader = new Reader(json);
+        PetData data = new PetData();
+        reader.skipWhitespace();
+        readPetDataObject(reader, data);
+        return data;
+    }
+
+    /**
+     * 解析WidgetData（包含嵌套的selectedPetData）
+     */
+    public static WidgetData readWidgetData(String json) throws JSONException {
+        Reader reader = new Reader(json);
+        WidgetData data = new WidgetData();
+        reader.skipWhitespace();
+        reader.expect('{');
+        if (reader.consumeIf('}')) {
+            return data;
+        }
+
+        do {
+            int keyStart = reader.readKey();
+            int keyLength = reader.keyLength;
+            if (reader.consumeNull()) {
+                continue;
+            }
+            if (reader.keyEquals(keyStart, keyLength, "widgetEnabled")) {
+                data.widgetEnabled = reader.readBoolean();
+            } else if (reader.keyEquals(keyStart, keyLength, "selectedPetId")) {
+                data.selectedPetId = reader.readStringValue();
+            } else if (reader.keyEquals(keyStart, keyLength, "lastUpdateTime")) {
+                data.lastUpdateTime = reader.readStringValue();
+            } else if (reader.keyEquals(keyStart, keyLength, "selectedPetData")) {
+                PetData petData = new PetData();
+                readPetDataObject(reader, petData);
+                data.selectedPetData = petData;
+            } else {
+                reader.skipValue();
+            }
+        } while (reader.nextMember());
+
+        return data;
+    }
+
+    private static void readPetDataObject(Reader reader, PetData data) throws JSONException {
+        reader.expect('{');
+        if (reader.consumeIf('}')) {
+            return;
+        }
+
+        do {
+            int keyStart = reader.readKey();
+            int keyLength = reader.keyLength;
+            if (reader.consumeNull()) {
+                continue;
+            }
+            // 先按长度分支，每个键最多比较一两次
+            switch (keyLength) {
+                case 5:
+                    if (reader.keyEquals(keyStart, keyLength, "petId")) {
+                        data.petId = reader.readStringValue();
+                        continue;
+                    }
+                    break;
+                case 6:
+                    if (reader.keyEquals(keyStart, keyLength, "energy")) {
+                        data.energy = reader.readInt();
+                        continue;
+                    }
+                    break;
+                case 7:
+                    if (reader.keyEquals(keyStart, keyLength, "petName")) {
+                        data.petName = reader.readStringValue();
+                        continue;
+                    }
+                    if (reader.keyEquals(keyStart, keyLength, "satiety")) {
+                        data.satiety = reader.readInt();
+                        continue;
+                    }
+                    if (reader.keyEquals(keyStart, keyLength, "isBored")) {
+                        data.isBored = reader.readBoolean();
+                        continue;
+                    }
+                    break;
+                case 9:
+                    if (reader.keyEquals(keyStart, keyLength, "ageInDays")) {
+                        data.ageInDays = reader.readInt();
+                        continue;
+                    }
+                    break;
+                case 10:
+                    if (reader.keyEquals(keyStart, keyLength, "prefabName")) {
+                        data.prefabName = reader.readStringValue();
+                        continue;
+                    }
+                    break;
+                case 12:
+                    if (reader.keyEquals(keyStart, keyLength, "purchaseDate")) {
+                        data.purchaseDate = reader.readStringValue();
+                        continue;
+                    }
+                    if (reader.keyEquals(keyStart, keyLength, "introduction")) {
+                        data.introduction = reader.readStringValue();
+                        continue;
+                    }
+                    break;
+                case 14:
+                    if (reader.keyEquals(keyStart, keyLength, "lastUpdateTime")) {
+                        data.lastUpdateTime = reader.readStringValue();
+                        continue;
+                    }
+                    break;
+            }
+            reader.skipValue();
+        } while (reader.nextMember());
+    }
+
+    // ========== 写入 ==========
+
+    public static String writePetData(PetData data) {
+        StringBuilder sb = new StringBuilder(256);
+        appendPetData(sb, data);
+        return sb.toString();
+    }
+
+    public static String writeWidgetData(WidgetData data) {
+        StringBuilder sb = new StringBuilder(320);
+        sb.append("{\"widgetEnabled\":").append(data.widgetEnabled);
+        sb.append(",\"selectedPetId\":");
+        appendString(sb, data.selectedPetId);
+        sb.append(",\"lastUpdateTime\":");
+        appendString(sb, data.lastUpdateTime);
+        if (data.selectedPetData != null) {
+            sb.append(",\"selectedPetData\":");
+            appendPetData(sb, data.selectedPetData);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public static void appendPetData(StringBuilder sb, PetData data) {
+        if (data == null) {
+            sb.append("{}");
+            return;
+        }
+        sb.append("{\"petId\":");
+        appendString(sb, data.petId);
+        sb.append(",\"petName\":");
+        appendString(sb, data.petName);
+        sb.append(",\"prefabName\":");
+        appendString(sb, data.prefabName);
+        sb.append(",\"energy\":").append(data.energy);
+        sb.append(",\"satiety\":").append(data.satiety);
+        sb.append(",\"isBored\":").append(data.isBored);
+        sb.append(",\"purchaseDate\":");
+        appendString(sb, data.purchaseDate);
+        sb.append(",\"ageInDays\":").append(data.ageInDays);
+        sb.append(",\"introduction\":");
+        appendString(sb, data.introduction);
+        sb.append(",\"lastUpdateTime\":");
+        appendString(sb, data.lastUpdateTime);
+        sb.append('}');
+    }
+
+    /**
+     * 写入带转义的JSON字符串，null写为空字符串
+     */
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        if (value != null) {
+            int length = value.length();
+            int runStart = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    continue;
+                }
+                // 不需要转义的连续片段整段追加
+                sb.append(value, runStart, i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    case '\b': sb.append("\\b"); break;
+                    case '\f': sb.append("\\f"); break;
+                    default:
+                        sb.append("\\u00");
+                        sb.append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                        break;
+                }
+                runStart = i + 1;
+            }
+            sb.append(value, runStart, length);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 单遍扫描的JSON读取器，只支持本编解码器需要的结构
+     */
+    private static final class Reader {
+        private final String json;
+        private final int length;
+        private int pos;
+        // 最近一次readKey读到的键名长度
+        int keyLength;
+
+        Reader(String json) throws JSONException {
+            if (json == null) {
+                throw new JSONException("JSON为空");
+            }
+            this.json = json;
+            this.length = json.length();
+        }
+
+        void skipWhitespace() {
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        void expect(char c) throws JSONException {
+            skipWhitespace();
+            if (pos >= length || json.charAt(pos) != c) {
+                throw error("应为 '" + c + "'");
+            }
+            pos++;
+        }
+
+        boolean consumeIf(char c) {
+            skipWhitespace();
+            if (pos < length && json.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 读取 "key": ，返回键名在原字符串中的起始位置，长度存入keyLength
+         * 键名不含转义字符（本数据模型的键名都是普通ASCII）
+         */
+        int readKey() throws JSONException {
+            expect('"');
+            int start = pos;
+            int end = json.indexOf('"', start);
+            if (end < 0) {
+                throw error("键名未结束");
+            }
+            keyLength = end - start;
+            pos = end + 1;
+            expect(':');
+            skipWhitespace();
+            return start;
+        }
+
+        boolean keyEquals(int start, int keyLength, String key) {
+            return keyLength == key.length() && json.regionMatches(start, key, 0, keyLength);
+        }
+
+        /**
+         * 读完一个成员后：遇到','返回true继续，遇到'}'返回false结束
+         */
+        boolean nextMember() throws JSONException {
+            skipWhitespace();
+            if (pos < length) {
+                char c = json.charAt(pos++);
+                if (c == ',') {
+                    return true;
+                }
+                if (c == '}') {
+                    return false;
+                }
+            }
+            throw error("应为 ',' 或 '}'");
+        }
+
+        /**
+         * 值为null时跳过并返回true，调用方保留默认值（与org.json的opt*一致）
+         */
+        boolean consumeNull() {
+            if (json.startsWith("null", pos)) {
+                pos += 4;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 读取字符串值；非字符串的值（如数字时间戳）按原文返回
+         */
+        String readStringValue() throws JSONException {
+            if (pos >= length) {
+                throw error("缺少值");
+            }
+            if (json.charAt(pos) != '"') {
+                int start = pos;
+                skipScalar();
+                return json.substring(start, pos);
+            }
+
+            int start = ++pos;
+            // 快速路径：没有转义字符时直接截取一次
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    pos++;
+                    return json.substring(start, pos - 1);
+                }
+                if (c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            if (pos >= length) {
+                throw error("字符串未结束");
+            }
+
+            // 慢速路径：带转义
+            StringBuilder sb = new StringBuilder(pos - start + 16);
+            sb.append(json, start, pos);
+            while (pos < length) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= length) {
+                    break;
+                }
+                char escaped = json.charAt(pos++);
+                switch (escaped) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > length) {
+                            throw error("\\u转义不完整");
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(json.charAt(pos++), 16);
+                            if (digit < 0) {
+                                throw error("\\u转义无效");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        throw error("无效的转义字符: " + escaped);
+                }
+            }
+            throw error("字符串未结束");
+        }
+
+        /**
+         * 原地解析整数；小数部分截断，带引号的数字也接受（与optInt一致）
+         */
+        int readInt() throws JSONException {
+            boolean quoted = pos < length && json.charAt(pos) == '"';
+            if (quoted) {
+                pos++;
+            }
+
+            boolean negative = false;
+            if (pos < length && (json.charAt(pos) == '-' || json.charAt(pos) == '+')) {
+                negative = json.charAt(pos) == '-';
+                pos++;
+            }
+
+            long value = 0;
+            int digitStart = pos;
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (value <= Integer.MAX_VALUE) {
+                    value = value * 10 + (c - '0');
+                }
+                pos++;
+            }
+            if (pos == digitStart) {
+                throw error("应为数字");
+            }
+            // 跳过小数和指数部分
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (quoted) {
+                expect('"');
+            }
+
+            value = negative ? -value : value;
+            return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+        }
+
+        boolean readBoolean() throws JSONException {
+            if (json.startsWith("true", pos)) {
+                pos += 4;
+                return true;
+            }
+            if (json.startsWith("false", pos)) {
+                pos += 5;
+                return false;
+            }
+            if (json.startsWith("\"true\"", pos)) {
+                pos += 6;
+                return true;
+            }
+            if (json.startsWith("\"false\"", pos)) {
+                pos += 7;
+                return false;
+            }
+            throw error("应为布尔值");
+        }
+
+        /**
+         * 跳过不认识的值（包括嵌套对象和数组），不分配内存
+         */
+        void skipValue() throws JSONException {
+            skipWhitespace();
+            if (pos >= length) {
+                throw error("缺少值");
+            }
+            char c = json.charAt(pos);
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                while (pos < length) {
+                    char ch = json.charAt(pos);
+                    if (ch == '"') {
+                        skipString();
+                        continue;
+                    }
+                    pos++;
+                    if (ch == '{' || ch == '[') {
+                        depth++;
+                    } else if (ch == '}' || ch == ']') {
+                        if (--depth == 0) {
+                            return;
+                        }
+                    }
+                }
+                throw error("对象或数组未结束");
+            } else {
+                skipScalar();
+            }
+        }
+
+        private void skipString() throws JSONException {
+            pos++;
+            while (pos < length) {
+                char c = json.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"') {
+                    return;
+                }
+            }
+            throw error("字符串未结束");
+        }
+
+        private void skipScalar() {
+            while (pos < length) {
+                char c = json.charAt(pos);
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private JSONException error(String message) {
+            return new JSONException(message + "，位置 " + pos);
+        }
+    }
+}
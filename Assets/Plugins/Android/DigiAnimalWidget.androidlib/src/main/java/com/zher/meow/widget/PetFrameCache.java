@@ -0,0 +1,141 @@
+package com.zher.meow.widget;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * 宠物动画帧缓存
+ * 缓存已经像素完美放大的帧位图，key = (帧句柄, 屏幕密度, 整数放大倍数)
+ * 按字节数做LRU淘汰，每一帧在进程内只从图集（PetAtlas）切出、放大一次
+ */
+public class PetFrameCache {
+
+    // 缓存上限：进程可用内存的1/32，最多4MB（一帧96x96约36KB）
+    private static final int MAX_CACHE_BYTES = 4 * 1024 * 1024;
+
+    private static PetFrameCache instance;
+
+    private final Context context;
+    private final FrameLruCache cache;
+
+    private PetFrameCache(Context context) {
+        this.context = context.getApplicationContext();
+
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 32, MAX_CACHE_BYTES);
+        this.cache = new FrameLruCache(maxBytes);
+
+        // 小组件Provider本身收不到onTrimMemory，挂到Application上接收内存回调
+        this.context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    public static synchronized PetFrameCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PetFrameCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取像素完美放大后的帧位图
+     * 注意：返回的位图是共享对象，不要recycle或修改
+     * @param frame 帧句柄（PetFrameIndex.FRAMES中的值）
+     * @return 解码失败时返回null
+     */
+    public Bitmap getScaledFrame(int frame, int scaleFactor) {
+        if (frame == 0 || scaleFactor <= 0) {
+            return null;
+        }
+        int densityDpi = context.getResources().getDisplayMetrics().densityDpi;
+        return cache.get(makeKey(frame, densityDpi, scaleFactor));
+    }
+
+    /**
+     * 响应系统内存压力
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // 进程即将被回收，全部清空（包括解码后的图集）
+            cache.evictAll();
+            PetAtlas.getInstance(context).release();
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // 进程进入后台LRU列表（BACKGROUND）或前台运行时内存偏低（RUNNING_LOW、RUNNING_CRITICAL）：
+            // 保留一半，正在播放的动画帧大概率仍然在缓存中。
+            // UI_HIDDEN（Unity切到后台）和RUNNING_MODERATE不处理，小组件动画仍在播放，缓存应保持完整
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    public int getHitCount() {
+        return cache.hitCount();
+    }
+
+    public int getMissCount() {
+        return cache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    public int getSizeBytes() {
+        return cache.size();
+    }
+
+    public int getMaxSizeBytes() {
+        return cache.maxSize();
+    }
+
+    /**
+     * 帧句柄占高32位，密度和放大倍数各占16位
+     */
+    private static long makeKey(int frame, int densityDpi, int scaleFactor) {
+        return ((long) frame << 32) | ((long) (densityDpi & 0xFFFF) << 16) | (scaleFactor & 0xFFFF);
+    }
+
+    /**
+     * 按字节计算大小的LRU，未命中时自动解码
+     */
+    private class FrameLruCache extends LruCache<Long, Bitmap> {
+        FrameLruCache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected int sizeOf(Long key, Bitmap value) {
+            return value.getByteCount();
+        }
+
+        @Override
+        protected Bitmap create(Long key) {
+            int frame = (int) (key >>> 32);
+            int scaleFactor = (int) (key & 0xFFFF);
+            return PetAtlas.getInstance(context).createScaledFrame(frame, scaleFactor);
+        }
+    }
+}
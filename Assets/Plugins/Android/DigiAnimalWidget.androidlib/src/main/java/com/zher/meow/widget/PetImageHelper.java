@@ -6,179 +6,93 @@ import android.util.Log;
 /**
  * 宠物图片资源助手类
  * 处理宠物图片和动画帧的资源映射
+ * 帧句柄来自构建时生成的PetFrameIndex，按（宠物类型, 动画, 帧）下标直接取，不按名称查找资源，
+ * 句柄对应构建时按屏幕密度放大好的资源（getScaledFrameResource），没有时由PetAtlas从图集中切出；
+ * 宠物类型和动画句柄由PetTypeRegistry解析
  */
 public class PetImageHelper {
     
     private static final String TAG = "PetImageHelper";
     
-    /**
-     * 获取宠物的默认图片资源ID
-     */
-    public static int getDefaultImageResource(Context context, String prefabName) {
-        String petType = extractPetType(prefabName);
-        String resourceName = petType.toLowerCase() + "_sit_1";
-        
-        int resourceId = getDrawableResourceId(context, resourceName);
-        if (resourceId == 0) {
-            // 如果找不到，使用默认图片
-            resourceId = getDrawableResourceId(context, "pet_catbrown_sit_1");
-        }
-        
-        Log.d(TAG, "默认图片: " + prefabName + " -> " + resourceName + " (ID: " + resourceId + ")");
-        return resourceId;
-    }
-    
-    /**
-     * 获取动画帧资源ID数组
-     */
-    public static int[] getAnimationFrames(Context context, String prefabName, String animationType) {
-        String petType = extractPetType(prefabName);
-        
-        int frameCount = getAnimationFrameCount(animationType);
-        int[] frames = new int[frameCount];
-        
-        for (int i = 1; i <= frameCount; i++) {
-            String resourceName = petType.toLowerCase() + "_" + animationType + "_" + i;
-            int resourceId = getDrawableResourceId(context, resourceName);
-            
-            if (resourceId == 0) {
-                // 如果找不到资源，使用默认图片
-                resourceId = getDrawableResourceId(context, "pet_catbrown_sit_1");
-            }
-            
-            frames[i - 1] = resourceId;
-        }
-        
-        Log.d(TAG, "动画帧: " + prefabName + " " + animationType + " (" + frameCount + " frames)");
-        return frames;
-    }
+    private static final int[] EMPTY_FRAMES = new int[0];
     
     /**
-     * 获取单个动画帧资源ID
+     * 获取动画的所有帧
+     * @return 共用的帧句柄数组，调用方不能修改；没有这个动画时返回空数组
      */
-    public static int getSingleFrame(Context context, String prefabName, String frameName) {
-        String petType = extractPetType(prefabName);
-        String resourceName = petType.toLowerCase() + "_" + frameName;
-        
-        int resourceId = getDrawableResourceId(context, resourceName);
-        if (resourceId == 0) {
-            // 如果找不到资源，使用默认图片
-            resourceId = getDrawableResourceId(context, "pet_catbrown_sit_1");
+    public static int[] getFrames(int petType, int animation) {
+        if (!PetTypeRegistry.isValidPetType(petType) || !PetTypeRegistry.isValidAnimation(animation)) {
+            return EMPTY_FRAMES;
         }
-        
-        Log.d(TAG, "单帧: " + prefabName + " " + frameName + " -> " + resourceName + " (ID: " + resourceId + ")");
-        return resourceId;
-    }
-    
-    /**
-     * 从prefabName提取宠物类型
-     */
-    private static String extractPetType(String prefabName) {
-        if (prefabName.contains("CatBlack")) return "pet_catblack";
-        if (prefabName.contains("CatBrown")) return "pet_catbrown";
-        if (prefabName.contains("CatGrey")) return "pet_catgrey";
-        if (prefabName.contains("CatWhite")) return "pet_catwhite";
-        return "pet_catbrown"; // 默认
+        return PetFrameIndex.FRAMES[petType][animation];
     }
     
     /**
-     * 获取动画帧数
+     * 获取单个动画帧句柄
+     * 找不到时使用默认宠物的坐下图片
+     * @param frame 从0开始的帧下标
      */
-    private static int getAnimationFrameCount(String animationType) {
-        switch (animationType.toLowerCase()) {
-            case "sit":
-                return 5;
-            case "run":
-                return 4;
-            case "laydown":
-                return 2;
-            default:
-                return 1;
+    public static int getFrame(int petType, int animation, int frame) {
+        int[] frames = getFrames(petType, animation);
+        if (frame >= 0 && frame < frames.length) {
+            return frames[frame];
         }
+        return PetFrameIndex.FRAMES[PetTypeRegistry.DEFAULT_PET_TYPE][PetFrameIndex.ANIM_SIT][0];
     }
     
     /**
-     * 通过资源名称获取drawable资源ID
+     * 获取帧句柄对应的放大好的drawable资源（按屏幕密度选择，已是整数倍最近邻放大；
+     * 只生成了xhdpi及以上，hdpi和mdpi由系统从xhdpi缩小）
+     * @return 资源ID，句柄无效时返回0
      */
-    private static int getDrawableResourceId(Context context, String resourceName) {
-        try {
-            int resourceId = context.getResources().getIdentifier(
-                resourceName, "drawable", context.getPackageName()
-            );
-            
-            if (resourceId == 0) {
-                Log.w(TAG, "找不到资源: " + resourceName);
-            }
-            
-            return resourceId;
-        } catch (Exception e) {
-            Log.e(TAG, "获取资源ID失败: " + resourceName, e);
+    public static int getScaledFrameResource(int frame) {
+        if (frame <= 0 || frame >= PetFrameIndex.SCALED_RESOURCES.length) {
             return 0;
         }
-    }
-    
-    /**
-     * 检查资源是否存在
-     */
-    public static boolean isResourceExists(Context context, String resourceName) {
-        return getDrawableResourceId(context, resourceName) != 0;
+        return PetFrameIndex.SCALED_RESOURCES[frame];
     }
     
     /**
      * 获取所有支持的宠物类型
      */
     public static String[] getSupportedPetTypes() {
-        return new String[]{
-            "Pet_CatBlack",
-            "Pet_CatBrown", 
-            "Pet_CatGrey",
-            "Pet_CatWhite"
-        };
+        return PetTypeRegistry.getPrefabNames();
     }
     
     /**
      * 获取所有支持的动画类型
      */
     public static String[] getSupportedAnimationTypes() {
-        return new String[]{
-            "sit",
-            "run", 
-            "laydown"
-        };
+        return PetTypeRegistry.getAnimationNames();
     }
     
     /**
      * 验证资源完整性
+     * 帧编号在构建时已检查，这里只检查各宠物类型是否缺少某个动画
      */
     public static void validateResources(Context context) {
         Log.d(TAG, "开始验证资源完整性...");
         
-        String[] petTypes = getSupportedPetTypes();
-        String[] animationTypes = getSupportedAnimationTypes();
-        
         int totalResources = 0;
-        int missingResources = 0;
+        int missingAnimations = 0;
         
-        for (String petType : petTypes) {
-            for (String animationType : animationTypes) {
-                int frameCount = getAnimationFrameCount(animationType);
+        for (int type = 0; type < PetTypeRegistry.getPetTypeCount(); type++) {
+            for (int animation = 0; animation < PetTypeRegistry.getAnimationCount(); animation++) {
+                int frameCount = PetTypeRegistry.getFrameCount(type, animation);
+                totalResources += frameCount;
                 
-                for (int i = 1; i <= frameCount; i++) {
-                    String resourceName = extractPetType(petType) + "_" + animationType + "_" + i;
-                    totalResources++;
-                    
-                    if (!isResourceExists(context, resourceName)) {
-                        Log.w(TAG, "缺少资源: " + resourceName);
-                        missingResources++;
-                    }
+                if (frameCount == 0) {
+                    Log.w(TAG, "缺少动画: " + PetTypeRegistry.getPrefabName(type) + " "
+                        + PetTypeRegistry.getAnimationName(animation));
+                    missingAnimations++;
                 }
             }
         }
         
-        Log.i(TAG, String.format("资源验证完成: 总计 %d 个资源，缺少 %d 个", 
-            totalResources, missingResources));
-            
-        if (missingResources == 0) {
+        Log.i(TAG, String.format("资源验证完成: 总计 %d 个资源，缺少 %d 个动画",
+            totalResources, missingAnimations));
+        
+        if (missingAnimations == 0) {
             Log.i(TAG, "所有资源完整！");
         } else {
             Log.w(TAG, "有资源缺失，可能影响动画播放");
@@ -0,0 +1,100 @@
+package com.zher.meow.widget;
+
+/**
+ * 宠物数据快照
+ * 不可变对象，由WidgetDataProvider通过AtomicReference发布，渲染线程直接读取，不访问磁盘也不解析JSON
+ */
+public final class PetSnapshot {
+    // 数据来源
+    public static final int SOURCE_DEFAULT = 0;
+    public static final int SOURCE_GAME = 1;
+    public static final int SOURCE_OFFLINE = 2;
+
+    public final String petId;
+    public final String petName;
+    public final String prefabName;
+    // prefabName解析出的宠物类型句柄（PetTypeRegistry），发布快照时解析一次
+    public final int petType;
+    public final int energy;
+    public final int satiety;
+    public final boolean isBored;
+    public final String purchaseDate;
+    public final int ageInDays;
+    public final String introduction;
+    public final String lastUpdateTime;
+
+    public final int source;
+    // 快照版本号，每次内容变化时递增
+    public final long version;
+
+    private PetSnapshot(PetData data, int source, long version) {
+        this.petId = data.petId;
+        this.petName = data.petName;
+        this.prefabName = data.prefabName;
+        this.petType = PetTypeRegistry.resolvePetType(data.prefabName);
+        this.energy = data.energy;
+        this.satiety = data.satiety;
+        this.isBored = data.isBored;
+        this.purchaseDate = data.purchaseDate;
+        this.ageInDays = data.ageInDays;
+        this.introduction = data.introduction;
+        this.lastUpdateTime = data.lastUpdateTime;
+        this.source = source;
+        this.version = version;
+    }
+
+    public static PetSnapshot of(PetData data, int source, long version) {
+        return new PetSnapshot(data, source, version);
+    }
+
+    /**
+     * 复制为可修改的PetData（调用方可以随意修改，不影响快照）
+     */
+    public PetData toPetData() {
+        PetData data = new PetData();
+        data.petId = petId;
+        data.petName = petName;
+        data.prefabName = prefabName;
+        data.energy = energy;
+        data.satiety = satiety;
+        data.isBored = isBored;
+        data.purchaseDate = purchaseDate;
+        data.ageInDays = ageInDays;
+        data.introduction = introduction;
+        data.lastUpdateTime = lastUpdateTime;
+        return data;
+    }
+
+    /**
+     * 显示内容是否相同（不比较时间戳和版本号）
+     */
+    public boolean sameContentAs(PetData data) {
+        return data != null
+                && energy == data.energy
+                && satiety == data.satiety
+                && isBored == data.isBored
+                && ageInDays == data.ageInDays
+                && equals(petId, data.petId)
+                && equals(petName, data.petName)
+                && equals(prefabName, data.prefabName)
+                && equals(purchaseDate, data.purchaseDate)
+                && equals(introduction, data.introduction);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "PetSnapshot{" +
+                "petName='" + petName + '\'' +
+                ", prefabName='" + prefabName + '\'' +
+                ", energy=" + energy +
+                ", satiety=" + satiety +
+                ", isBored=" + isBored +
+                ", source=" + source +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,175 @@
+package com.zher.meow.widget;
+
+import java.util.HashMap;
+
+/**
+ * 宠物类型和动画注册表
+ * 宠物类型和动画用小整数句柄表示，句柄就是PetFrameIndex中的下标（PET_*、ANIM_*），
+ * 可以直接用来取帧。prefabName在发布快照时解析一次（PetSnapshot.petType），
+ * 渲染和动画代码只使用句柄，不再逐帧做字符串匹配
+ */
+public final class PetTypeRegistry {
+    private static final String TAG = "PetTypeRegistry";
+
+    // 找不到宠物类型时使用的类型
+    public static final int DEFAULT_PET_TYPE = PetFrameIndex.PET_CATBROWN;
+    // 找不到动画
+    public static final int ANIM_NONE = -1;
+
+    // 游戏中的宠物预制体名
+    private static final String[] KNOWN_PREFABS = {
+        "Pet_CatBlack",
+        "Pet_CatBrown",
+        "Pet_CatGrey",
+        "Pet_CatWhite"
+    };
+
+    // 解析缓存的上限，防止异常数据让缓存无限增长
+    private static final int MAX_CACHED_PREFABS = 64;
+
+    // 宠物类型句柄 -> 预制体名
+    private static final String[] prefabNames = new String[PetFrameIndex.PET_TYPE_COUNT];
+    // prefabName -> 宠物类型句柄
+    private static final HashMap<String, Integer> petTypeCache = new HashMap<>();
+
+    // 统计
+    private static int parseCount = 0;
+
+    static {
+        for (String prefabName : KNOWN_PREFABS) {
+            int petType = parsePetType(prefabName);
+            if (prefabNames[petType] == null) {
+                prefabNames[petType] = prefabName;
+            }
+        }
+        for (int petType = 0; petType < prefabNames.length; petType++) {
+            if (prefabNames[petType] == null) {
+                prefabNames[petType] = "Pet_" + PetFrameIndex.PET_TYPE_NAMES[petType];
+            }
+        }
+    }
+
+    private PetTypeRegistry() {
+    }
+
+    /**
+     * 解析prefabName对应的宠物类型句柄，同一个prefabName只解析一次
+     * prefabName中包含类型名（不区分大小写，例如Pet_CatBrown）即匹配，找不到时返回默认类型
+     */
+    public static int resolvePetType(String prefabName) {
+        if (prefabName == null) {
+            return DEFAULT_PET_TYPE;
+        }
+        synchronized (petTypeCache) {
+            Integer cached = petTypeCache.get(prefabName);
+            if (cached != null) {
+                return cached;
+            }
+            int petType = parsePetType(prefabName);
+            parseCount++;
+            if (petTypeCache.size() >= MAX_CACHED_PREFABS) {
+                petTypeCache.clear();
+            }
+            petTypeCache.put(prefabName, petType);
+            return petType;
+        }
+    }
+
+    public static int getPetTypeCount() {
+        return PetFrameIndex.PET_TYPE_COUNT;
+    }
+
+    /**
+     * 宠物类型对应的预制体名（例如Pet_CatBrown）
+     */
+    public static String getPrefabName(int petType) {
+        return isValidPetType(petType) ? prefabNames[petType] : prefabNames[DEFAULT_PET_TYPE];
+    }
+
+    /**
+     * 所有宠物类型的预制体名，下标就是宠物类型句柄
+     */
+    public static String[] getPrefabNames() {
+        return prefabNames.clone();
+    }
+
+    public static boolean isValidPetType(int petType) {
+        return petType >= 0 && petType < PetFrameIndex.PET_TYPE_COUNT;
+    }
+
+    /**
+     * 解析动画名（sit、run、lookleft、lookright，不区分大小写）
+     * @return 动画句柄，找不到时返回ANIM_NONE
+     */
+    public static int resolveAnimation(String animationName) {
+        if (animationName == null) {
+            return ANIM_NONE;
+        }
+        for (int animation = 0; animation < PetFrameIndex.ANIMATION_COUNT; animation++) {
+            if (PetFrameIndex.ANIMATION_NAMES[animation].equalsIgnoreCase(animationName)) {
+                return animation;
+            }
+        }
+        return ANIM_NONE;
+    }
+
+    public static int getAnimationCount() {
+        return PetFrameIndex.ANIMATION_COUNT;
+    }
+
+    public static String getAnimationName(int animation) {
+        return isValidAnimation(animation) ? PetFrameIndex.ANIMATION_NAMES[animation] : null;
+    }
+
+    /**
+     * 所有动画名，下标就是动画句柄
+     */
+    public static String[] getAnimationNames() {
+        return PetFrameIndex.ANIMATION_NAMES.clone();
+    }
+
+    public static boolean isValidAnimation(int animation) {
+        return animation >= 0 && animation < PetFrameIndex.ANIMATION_COUNT;
+    }
+
+    /**
+     * 宠物类型的某个动画有几帧，没有这个动画时返回0
+     */
+    public static int getFrameCount(int petType, int animation) {
+        if (!isValidPetType(petType) || !isValidAnimation(animation)) {
+            return 0;
+        }
+        return PetFrameIndex.FRAMES[petType][animation].length;
+    }
+
+    /**
+     * prefabName实际做字符串匹配的次数（缓存未命中）
+     */
+    public static int getParseCount() {
+        synchronized (petTypeCache) {
+            return parseCount;
+        }
+    }
+
+    private static int parsePetType(String prefabName) {
+        for (int petType = 0; petType < PetFrameIndex.PET_TYPE_COUNT; petType++) {
+            if (containsIgnoreCase(prefabName, PetFrameIndex.PET_TYPE_NAMES[petType])) {
+                return petType;
+            }
+        }
+        return DEFAULT_PET_TYPE;
+    }
+
+    /**
+     * 不区分大小写的contains，不分配新字符串
+     */
+    private static boolean containsIgnoreCase(String text, String part) {
+        int last = text.length() - part.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+package com.zher.meow.widget;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * 数值变化调度器
+ * 离线数值的衰减是确定的，根据离线基准数据算出下一次显示内容（精力、饱食、无聊状态及状态文本）
+ * 变化的时间点，只设置一个非唤醒闹钟在那时刷新；每次渲染后重新计算。替代原来每分钟一次的唤醒闹钟
+ */
+public class StatChangeScheduler {
+    private static final String TAG = "StatChangeScheduler";
+
+    // 允许系统把闹钟推迟的时间窗口，便于和其他闹钟合并
+    private static final long ALARM_WINDOW_MILLIS = 5 * 1000;
+
+    // 当前已设置的闹钟时间，0表示没有
+    private static long scheduledTime = 0;
+
+    // 统计
+    private static int scheduleCount = 0;
+    private static int skippedCount = 0;
+
+    /**
+     * 按当前离线基准数据设置下一次刷新闹钟，之后数值不会再变化时取消闹钟
+     */
+    public static synchronized void scheduleNext(Context context) {
+        long nextTime = WidgetDataProvider.getInstance(context).getNextStatChangeTime(System.currentTimeMillis());
+        if (nextTime <= 0) {
+            cancel(context);
+            return;
+        }
+
+        // 同一个时间点已经设置过，不需要再调用AlarmManager
+        if (nextTime == scheduledTime) {
+            skippedCount++;
+            return;
+        }
+
+        try {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            if (alarmManager == null) {
+                Log.e(TAG, "无法获取AlarmManager");
+                return;
+            }
+
+            // 非唤醒闹钟：息屏期间不唤醒设备，亮屏后再补发
+            alarmManager.setWindow(AlarmManager.RTC, nextTime, ALARM_WINDOW_MILLIS, createPendingIntent(context));
+            scheduledTime = nextTime;
+            scheduleCount++;
+            // Log.d(TAG, "下一次数值变化: " + (nextTime - System.currentTimeMillis()) + "ms后");
+
+        } catch (Exception e) {
+            Log.e(TAG, "设置数值变化闹钟失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取消闹钟
+     */
+    public static synchronized void cancel(Context context) {
+        try {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            if (alarmManager == null) {
+                Log.e(TAG, "无法获取AlarmManager");
+                return;
+            }
+
+            alarmManager.cancel(createPendingIntent(context));
+            scheduledTime = 0;
+            // Log.d(TAG, "数值变化闹钟已取消");
+
+        } catch (Exception e) {
+            Log.e(TAG, "取消数值变化闹钟失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 当前闹钟时间，0表示没有
+     */
+    public static synchronized long getScheduledTime() {
+        return scheduledTime;
+    }
+
+    public static synchronized int getScheduleCount() {
+        return scheduleCount;
+    }
+
+    public static synchronized int getSkippedCount() {
+        return skippedCount;
+    }
+
+    private static PendingIntent createPendingIntent(Context context) {
+        Intent intent = new Intent(context, DigiAnimalWidgetProvider.class);
+        intent.setAction(DigiAnimalWidgetProvider.ACTION_PERIODIC_UPDATE);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -0,0 +1,48 @@
+package com.zher.meow.widget;
+
+/**
+ * 令牌桶限流器
+ * 用于限制发往启动器的小组件IPC频率，允许短时突发
+ */
+public class TokenBucket {
+    private final int capacity;
+    private final double tokensPerMs;
+
+    private double tokens;
+    private long lastRefillTime = -1;
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数（长期平均速率）
+     * @param capacity 桶容量（允许的最大突发次数）
+     */
+    public TokenBucket(int permitsPerSecond, int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerMs = Math.max(1, permitsPerSecond) / 1000.0;
+        this.tokens = this.capacity;
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @return 获取成功返回true，桶空时返回false
+     */
+    public synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refill(long now) {
+        if (lastRefillTime < 0) {
+            lastRefillTime = now;
+            return;
+        }
+        long elapsed = now - lastRefillTime;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerMs);
+            lastRefillTime = now;
+        }
+    }
+}
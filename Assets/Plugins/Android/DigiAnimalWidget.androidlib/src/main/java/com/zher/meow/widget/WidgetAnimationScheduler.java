@@ -0,0 +1,240 @@
+package com.zher.meow.widget;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 小组件动画调度器
+ * 统一驱动所有小组件的逐帧动画：每个小组件一条动画轨道，全部由同一个ticker驱动，
+ * N个小组件每个节拍只唤醒一次定时器。
+ * 每条轨道按帧率上限节流、合并落在同一帧预算内的tick，
+ * 并用全局令牌桶限制发往启动器的小组件IPC频率。
+ * 轨道只在渲染线程上修改；统计用原子计数器累计，Unity线程读取统计时不遍历轨道
+ */
+public class WidgetAnimationScheduler {
+    // 小组件IPC限流：长期每秒最多20次，允许5次突发
+    private static final int DEFAULT_IPC_PER_SECOND = 20;
+    private static final int DEFAULT_IPC_BURST = 5;
+
+    /**
+     * 动画轨道，由调度器按节拍驱动
+     */
+    public interface AnimationTrack {
+        /**
+         * 渲染当前帧（会产生一次小组件IPC）
+         */
+        void renderFrame();
+
+        /**
+         * 切换到下一帧
+         * @return 上一帧应停留的时间(ms)，返回负数表示动画结束
+         */
+        long advance();
+    }
+
+    /**
+     * 正在播放的动画
+     */
+    private static class ActiveAnimation {
+        final AnimationTrack track;
+        final FrameRateGovernor governor;
+        long nextTickTime;
+
+        ActiveAnimation(AnimationTrack track, int maxFps, long startTime) {
+            this.track = track;
+            this.governor = new FrameRateGovernor(maxFps);
+            this.nextTickTime = startTime;
+        }
+    }
+
+    private static WidgetAnimationScheduler instance;
+
+    // 动画和其他渲染工作在同一个渲染线程上执行
+    private final Handler handler = new Handler(WidgetRenderThread.getInstance().getLooper());
+    private final TokenBucket ipcBucket = new TokenBucket(DEFAULT_IPC_PER_SECOND, DEFAULT_IPC_BURST);
+
+    // widgetId -> 正在播放的动画
+    private final SparseArray<ActiveAnimation> animations = new SparseArray<>();
+    private long scheduledTickTime = Long.MAX_VALUE;
+
+    // 统计（渲染线程写，其他线程读）
+    private final AtomicLong renderedFrames = new AtomicLong();
+    private final AtomicLong coalescedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong tickCount = new AtomicLong();
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduledTickTime = Long.MAX_VALUE;
+            onTick();
+        }
+    };
+
+    private WidgetAnimationScheduler() {
+    }
+
+    public static synchronized WidgetAnimationScheduler getInstance() {
+        if (instance == null) {
+            instance = new WidgetAnimationScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * 为指定小组件开始播放动画（只替换该小组件当前的动画，不影响其他小组件）
+     * @param maxFps 该动画的帧率上限
+     */
+    public void start(int widgetId, AnimationTrack track, int maxFps) {
+        stop(widgetId);
+        long now = SystemClock.uptimeMillis();
+        animations.put(widgetId, new ActiveAnimation(track, maxFps, now));
+        activeCount.set(animations.size());
+        scheduleTick(now);
+    }
+
+    /**
+     * 停止指定小组件的动画
+     */
+    public void stop(int widgetId) {
+        ActiveAnimation animation = animations.get(widgetId);
+        if (animation == null) {
+            return;
+        }
+        animations.remove(widgetId);
+        activeCount.set(animations.size());
+
+        if (animations.size() == 0) {
+            handler.removeCallbacks(tickRunnable);
+            scheduledTickTime = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 停止所有小组件的动画
+     */
+    public void stopAll() {
+        animations.clear();
+        activeCount.set(0);
+        handler.removeCallbacks(tickRunnable);
+        scheduledTickTime = Long.MAX_VALUE;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * 一次节拍：处理所有到期的动画，然后按最早的下一帧时间重新安排ticker
+     */
+    private void onTick() {
+        tickCount.incrementAndGet();
+        long now = SystemClock.uptimeMillis();
+        long earliestNextTime = Long.MAX_VALUE;
+
+        // 倒序遍历，轨道结束时可以直接移除
+        for (int i = animations.size() - 1; i >= 0; i--) {
+            ActiveAnimation animation = animations.valueAt(i);
+            if (animation.nextTickTime <= now && !stepAnimation(animation, now)) {
+                animations.removeAt(i);
+                continue;
+            }
+            earliestNextTime = Math.min(earliestNextTime, animation.nextTickTime);
+        }
+
+        activeCount.set(animations.size());
+
+        if (earliestNextTime != Long.MAX_VALUE) {
+            scheduleTick(earliestNextTime);
+        }
+    }
+
+    /**
+     * 推进单条动画：渲染当前帧并计算下一帧时间
+     * @return 动画结束返回false
+     */
+    private boolean stepAnimation(ActiveAnimation animation, long now) {
+        FrameRateGovernor governor = animation.governor;
+        if (!governor.canRender(now)) {
+            // 还在上一帧的预算内，等到预算结束再渲染
+            animation.nextTickTime = governor.getNextFrameTime();
+            return true;
+        }
+
+        if (ipcBucket.tryAcquire(now)) {
+            animation.track.renderFrame();
+            governor.onFrameRendered(now);
+            renderedFrames.incrementAndGet();
+        } else {
+            // IPC令牌耗尽，丢弃这一帧，避免system_server积压更新
+            droppedFrames.incrementAndGet();
+        }
+
+        // 计算下一帧的时间；落在同一帧预算内的帧直接合并掉，只渲染最新的一帧
+        long delay = animation.track.advance();
+        if (delay < 0) {
+            return false;
+        }
+        long nextTime = now + delay;
+        while (nextTime < governor.getNextFrameTime()) {
+            long nextDelay = animation.track.advance();
+            if (nextDelay < 0) {
+                return false;
+            }
+            coalescedFrames.incrementAndGet();
+            nextTime += nextDelay;
+        }
+
+        animation.nextTickTime = nextTime;
+        return true;
+    }
+
+    /**
+     * 只保留一个待执行的ticker，时间取更早的那个
+     */
+    private void scheduleTick(long time) {
+        if (time >= scheduledTickTime) {
+            return;
+        }
+        handler.removeCallbacks(tickRunnable);
+        scheduledTickTime = time;
+        handler.postAtTime(tickRunnable, time);
+    }
+
+    public long getRenderedFrames() {
+        return renderedFrames.get();
+    }
+
+    public long getCoalescedFrames() {
+        return coalescedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * ticker唤醒次数（多个小组件共享同一次唤醒）
+     */
+    public long getTickCount() {
+        return tickCount.get();
+    }
+
+    /**
+     * 获取统计信息（用于调试）
+     */
+    public String getStats() {
+        return "WidgetAnimationScheduler{" +
+                "rendered=" + getRenderedFrames() +
+                ", coalesced=" + getCoalescedFrames() +
+                ", dropped=" + getDroppedFrames() +
+                ", ticks=" + getTickCount() +
+                ", active=" + getActiveCount() +
+                '}';
+    }
+}
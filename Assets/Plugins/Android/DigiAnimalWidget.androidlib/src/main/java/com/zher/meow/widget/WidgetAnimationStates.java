@@ -0,0 +1,104 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+/**
+ * 小组件动画状态表
+ * 按widgetId保存每个小组件当前的动画状态（坐下/左右看/跑步），内存中用SparseIntArray，
+ * 持久化在WidgetStateStore的动画状态分区中，替代原来所有小组件共用的全局状态键
+ */
+public class WidgetAnimationStates {
+    private static final String TAG = "WidgetAnimationStates";
+
+    // 状态码
+    public static final int STATE_SIT = 0;
+    public static final int STATE_LOOK = 1;
+    public static final int STATE_RUN = 2;
+
+    private static final String[] STATE_NAMES = {"sit", "look", "run"};
+
+    private static WidgetAnimationStates instance;
+
+    private final WidgetStateStore store;
+    private final SparseIntArray states = new SparseIntArray();
+    // 旧版本的全局状态，作为还没有独立状态的小组件的默认值
+    private int defaultState = STATE_SIT;
+
+    private WidgetAnimationStates(Context context) {
+        this.store = WidgetStateStore.getInstance(context);
+        defaultState = store.loadAnimationStates(states);
+    }
+
+    public static synchronized WidgetAnimationStates getInstance(Context context) {
+        if (instance == null) {
+            instance = new WidgetAnimationStates(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取小组件的动画状态码
+     */
+    public synchronized int getState(int widgetId) {
+        return states.get(widgetId, defaultState);
+    }
+
+    /**
+     * 设置小组件的动画状态码，状态未变化时不写盘
+     */
+    public synchronized void setState(int widgetId, int state) {
+        int index = states.indexOfKey(widgetId);
+        if (index >= 0 && states.valueAt(index) == state) {
+            return;
+        }
+        states.put(widgetId, state);
+        save();
+    }
+
+    /**
+     * 移除已删除小组件的状态
+     */
+    public synchronized void removeWidgets(int[] widgetIds) {
+        boolean changed = false;
+        for (int widgetId : widgetIds) {
+            int index = states.indexOfKey(widgetId);
+            if (index >= 0) {
+                states.removeAt(index);
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * 状态名转状态码，未知状态按坐下处理
+     */
+    public static int toStateCode(String stateName) {
+        for (int i = 0; i < STATE_NAMES.length; i++) {
+            if (STATE_NAMES[i].equals(stateName)) {
+                return i;
+            }
+        }
+        return STATE_SIT;
+    }
+
+    /**
+     * 状态码转状态名
+     */
+    public static String toStateName(int stateCode) {
+        if (stateCode < 0 || stateCode >= STATE_NAMES.length) {
+            return STATE_NAMES[STATE_SIT];
+        }
+        return STATE_NAMES[stateCode];
+    }
+
+    private void save() {
+        if (store.begin().putAnimationStates(defaultState, states).commit() < 0) {
+            Log.e(TAG, "保存小组件动画状态失败");
+        }
+    }
+}
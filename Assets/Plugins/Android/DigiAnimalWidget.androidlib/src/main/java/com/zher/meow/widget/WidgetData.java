@@ -1,7 +1,6 @@
 package com.zher.meow.widget;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
 /**
  * 小组件数据模型
@@ -24,36 +23,14 @@ public class WidgetData {
      * 从JSON字符串创建WidgetData对象
      */
     public static WidgetData fromJson(String jsonString) throws JSONException {
-        JSONObject jsonObject = new JSONObject(jsonString);
-        
-        WidgetData widgetData = new WidgetData();
-        widgetData.widgetEnabled = jsonObject.optBoolean("widgetEnabled", true);
-        widgetData.selectedPetId = jsonObject.optString("selectedPetId", "");
-        widgetData.lastUpdateTime = jsonObject.optString("lastUpdateTime", "");
-        
-        // 解析宠物数据
-        JSONObject petDataJson = jsonObject.optJSONObject("selectedPetData");
-        if (petDataJson != null) {
-            widgetData.selectedPetData = PetData.fromJson(petDataJson);
-        }
-        
-        return widgetData;
+        return PetDataJsonCodec.readWidgetData(jsonString);
     }
     
     /**
      * 转换为JSON字符串
      */
-    public String toJson() throws JSONException {
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("widgetEnabled", widgetEnabled);
-        jsonObject.put("selectedPetId", selectedPetId);
-        jsonObject.put("lastUpdateTime", lastUpdateTime);
-        
-        if (selectedPetData != null) {
-            jsonObject.put("selectedPetData", selectedPetData.toJson());
-        }
-        
-        return jsonObject.toString();
+    public String toJson() {
+        return PetDataJsonCodec.writeWidgetData(this);
     }
     
     @Override
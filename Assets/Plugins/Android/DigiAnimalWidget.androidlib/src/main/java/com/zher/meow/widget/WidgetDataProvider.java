@@ -1,21 +1,31 @@
 package com.zher.meow.widget;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * 小组件数据提供者
  * 统一管理游戏数据和离线数据，提供最佳数据源
+ * 当前数据以不可变快照的形式保存在内存中，只在游戏数据更新或定期计算产生变化时重新发布
  */
 public class WidgetDataProvider {
     private static final String TAG = "WidgetDataProvider";
-    private static final String GAME_DATA_PREFS = "widget_game_data";
-    private static final String KEY_GAME_DATA_JSON = "game_data_json";
     
     private Context context;
     private OfflineDataManager offlineDataManager;
-    private SharedPreferences gameDataPrefs;
+    private WidgetStateStore store;
+    
+    // 当前宠物数据快照，渲染路径只读这里
+    private final AtomicReference<PetSnapshot> snapshot = new AtomicReference<>();
+    private long snapshotVersion = 0;
+    
+    // 最近一次离线模拟的结果及其对应的基准时间、规则和模拟时间
+    private OfflineSimulator.Result lastSimulation;
+    private long lastSimulationBase;
+    private DecayRules lastSimulationRules;
+    private long lastSimulationTime;
     
     // 单例模式
     private static WidgetDataProvider instance;
@@ -23,7 +33,8 @@ public class WidgetDataProvider {
     private WidgetDataProvider(Context context) {
         this.context = context.getApplicationContext();
         this.offlineDataManager = new OfflineDataManager(this.context);
-        this.gameDataPrefs = this.context.getSharedPreferences(GAME_DATA_PREFS, Context.MODE_PRIVATE);
+        this.store = WidgetStateStore.getInstance(this.context);
+        DecayRules.ensureLoaded(this.context);
     }
     
     public static synchronized WidgetDataProvider getInstance(Context context) {
@@ -34,10 +45,39 @@ public class WidgetDataProvider {
     }
     
     /**
-     * 获取当前最佳的宠物数据
-     * 优先级：新鲜的游戏数据 > 离线计算数据 > 默认数据
+     * 获取当前宠物数据（快照的副本，可以随意修改）
      */
     public PetData getCurrentPetData() {
+        return getSnapshot().toPetData();
+    }
+    
+    /**
+     * 获取当前宠物数据快照
+     * 只读内存；进程启动后第一次调用时才从磁盘计算一次
+     */
+    public PetSnapshot getSnapshot() {
+        PetSnapshot current = snapshot.get();
+        if (current == null) {
+            refreshSnapshot();
+            current = snapshot.get();
+        }
+        return current;
+    }
+    
+    /**
+     * 快照版本号，快照内容每变化一次加1
+     */
+    public long getSnapshotVersion() {
+        PetSnapshot current = snapshot.get();
+        return current != null ? current.version : 0;
+    }
+    
+    /**
+     * 从磁盘重新选择最佳数据源并发布快照
+     * 优先级：新鲜的游戏数据 > 离线计算数据 > 默认数据
+     * @return 快照内容发生变化返回true
+     */
+    public boolean refreshSnapshot() {
         try {
             // 获取游戏数据
             PetData gameData = getGameData();
@@ -61,7 +101,7 @@ public class WidgetDataProvider {
                     updateOfflineBaseline(gameData);
                 }
                 
-                return gameData;
+                return publishSnapshot(gameData, PetSnapshot.SOURCE_GAME);
             } else if (offlineBaseData != null && DataFreshnessChecker.isOfflineDataValid(offlineBaseData)) {
                 // Log.d(TAG, "使用离线计算数据 - 立即执行计算");
                 
@@ -71,7 +111,7 @@ public class WidgetDataProvider {
                 // Log.d(TAG, "离线计算: 基准时间=" + offlineBaseData.baseTimestamp + 
                 //           ", 当前时间=" + currentTime + ", 经过=" + elapsedSeconds + "秒");
                 
-                PetData calculatedData = OfflineCalculator.calculateCurrentStats(offlineBaseData, currentTime);
+                PetData calculatedData = calculateOfflineData(offlineBaseData, currentTime);
                 
                 // if (calculatedData != null) {
                 //     Log.d(TAG, "离线计算结果: 精力=" + calculatedData.energy + 
@@ -82,18 +122,50 @@ public class WidgetDataProvider {
                 // 更新离线计算时间
                 offlineDataManager.updateOfflineTimestamp(currentTime);
                 
-                return calculatedData;
+                return publishSnapshot(calculatedData, PetSnapshot.SOURCE_OFFLINE);
             } else {
                 // Log.d(TAG, "使用默认数据");
-                return createDefaultPetData();
+                return publishSnapshot(createDefaultPetData(), PetSnapshot.SOURCE_DEFAULT);
             }
             
         } catch (Exception e) {
             Log.e(TAG, "获取当前宠物数据失败: " + e.getMessage());
-            return createDefaultPetData();
+            if (snapshot.get() == null) {
+                return publishSnapshot(createDefaultPetData(), PetSnapshot.SOURCE_DEFAULT);
+            }
+            return false;
         }
     }
     
+    /**
+     * 发布新快照，内容没有变化时保留旧快照
+     * 离线计算没有找到同一只宠物的游戏数据时不知道购买日期、年龄和介绍，同一只宠物沿用上一个快照中的值
+     * @return 快照内容发生变化返回true
+     */
+    private synchronized boolean publishSnapshot(PetData data, int source) {
+        if (data == null) {
+            return false;
+        }
+        
+        PetSnapshot current = snapshot.get();
+        if (current != null && source == PetSnapshot.SOURCE_OFFLINE
+                && current.source != PetSnapshot.SOURCE_DEFAULT
+                && current.petId != null && current.petId.equals(data.petId)
+                && (data.purchaseDate == null || data.purchaseDate.isEmpty())) {
+            data.purchaseDate = current.purchaseDate;
+            data.ageInDays = current.ageInDays;
+            data.introduction = current.introduction;
+        }
+        
+        if (current != null && current.sameContentAs(data)) {
+            return false;
+        }
+        
+        snapshot.set(PetSnapshot.of(data, source, ++snapshotVersion));
+        // Log.d(TAG, "发布新快照: " + snapshot.get());
+        return true;
+    }
+    
     /**
      * 处理游戏数据更新
      */
@@ -104,11 +176,13 @@ public class WidgetDataProvider {
         }
         
         try {
-            // 保存游戏数据
-            saveGameData(gameData);
+            // 游戏数据和离线基准数据在同一个事务中保存
+            OfflineDataManager.OfflineBaseData baseline =
+                    OfflineDataManager.createBaseData(gameData, System.currentTimeMillis());
+            store.begin().putGameData(gameData).putBaseline(baseline).commit();
             
-            // 更新离线基准数据
-            updateOfflineBaseline(gameData);
+            // 发布新快照
+            publishSnapshot(gameData, PetSnapshot.SOURCE_GAME);
             
             // Log.d(TAG, "游戏数据更新完成: " + gameData.petName);
             
@@ -117,6 +191,37 @@ public class WidgetDataProvider {
         }
     }
     
+    /**
+     * 处理Unity下发的小组件数据更新
+     * 小组件字段、游戏数据和离线基准数据一次提交
+     */
+    public void handleWidgetDataUpdate(WidgetData widgetData) {
+        if (widgetData == null) {
+            Log.w(TAG, "小组件数据为空，忽略更新");
+            return;
+        }
+        
+        try {
+            PetData gameData = widgetData.selectedPetData;
+            OfflineDataManager.OfflineBaseData baseline = gameData != null
+                    ? OfflineDataManager.createBaseData(gameData, System.currentTimeMillis())
+                    : null;
+            
+            WidgetStateStore.Transaction tx = store.begin().putWidgetData(widgetData);
+            if (gameData != null) {
+                tx.putGameData(gameData).putBaseline(baseline);
+            }
+            tx.commit();
+            
+            if (gameData != null) {
+                publishSnapshot(gameData, PetSnapshot.SOURCE_GAME);
+            }
+            
+        } catch (Exception e) {
+            Log.e(TAG, "处理小组件数据更新失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 刷新离线计算（手动刷新按钮调用）
      */
@@ -129,13 +234,14 @@ public class WidgetDataProvider {
             
             if (offlineBaseData != null && DataFreshnessChecker.isOfflineDataValid(offlineBaseData)) {
                 long currentTime = System.currentTimeMillis();
-                PetData calculatedData = OfflineCalculator.calculateCurrentStats(offlineBaseData, currentTime);
+                PetData calculatedData = calculateOfflineData(offlineBaseData, currentTime);
                 
                 // 更新离线计算时间
                 offlineDataManager.updateOfflineTimestamp(currentTime);
                 
+                publishSnapshot(calculatedData, PetSnapshot.SOURCE_OFFLINE);
                 // Log.d(TAG, "离线计算刷新完成");
-                return calculatedData;
+                return getCurrentPetData();
             } else {
                 Log.w(TAG, "离线基准数据无效，返回默认数据");
                 return createDefaultPetData();
@@ -162,7 +268,8 @@ public class WidgetDataProvider {
             if (DataFreshnessChecker.shouldUseGameData(gameData, offlineBaseData)) {
                 if (gameData != null) {
                     updateOfflineBaseline(gameData);
-                    return gameData;
+                    publishSnapshot(gameData, PetSnapshot.SOURCE_GAME);
+                    return getCurrentPetData();
                 }
             }
             
@@ -175,6 +282,67 @@ public class WidgetDataProvider {
         }
     }
     
+    /**
+     * 下一次显示数值发生变化的时间
+     * @return 毫秒时间戳，没有离线基准数据或之后不会再变化时返回-1
+     */
+    public long getNextStatChangeTime(long currentTime) {
+        OfflineDataManager.OfflineBaseData offlineBaseData = getValidOfflineBaseData();
+        if (offlineBaseData == null) {
+            return -1;
+        }
+        return simulateOffline(offlineBaseData, store.loadGameData(), currentTime).nextChangeTime;
+    }
+    
+    /**
+     * 离线模拟当前宠物数据
+     */
+    private PetData calculateOfflineData(OfflineDataManager.OfflineBaseData baseData, long currentTime) {
+        PetData gameData = store.loadGameData();
+        OfflineSimulator.Result state = simulateOffline(baseData, gameData, currentTime);
+        return OfflineSimulator.toPetData(baseData, gameData, state, currentTime);
+    }
+    
+    /**
+     * 离线模拟，结果在下一次显示变化之前都有效，渲染后紧接着的调度计算直接复用
+     */
+    private synchronized OfflineSimulator.Result simulateOffline(OfflineDataManager.OfflineBaseData baseData,
+                                                                 PetData gameData, long currentTime) {
+        OfflineSimulator.Result cached = lastSimulation;
+        if (cached != null && lastSimulationBase == baseData.baseTimestamp
+                && lastSimulationRules == DecayRules.current()
+                && currentTime >= lastSimulationTime
+                && (cached.nextChangeTime < 0 || currentTime < cached.nextChangeTime)) {
+            return cached;
+        }
+        
+        OfflineSimulator.Result result = OfflineSimulator.simulate(baseData, gameData, currentTime);
+        lastSimulation = result;
+        lastSimulationBase = baseData.baseTimestamp;
+        lastSimulationRules = DecayRules.current();
+        lastSimulationTime = currentTime;
+        return result;
+    }
+    
+    /**
+     * 获取有效的离线基准数据（用于预测数值变化）
+     * @return 没有或无效时返回null
+     */
+    public OfflineDataManager.OfflineBaseData getValidOfflineBaseData() {
+        OfflineDataManager.OfflineBaseData offlineBaseData = offlineDataManager.loadOfflineBaseData();
+        if (offlineBaseData == null || !DataFreshnessChecker.isOfflineDataValid(offlineBaseData)) {
+            return null;
+        }
+        return offlineBaseData;
+    }
+    
+    /**
+     * 把内存中尚未写盘的数据写盘（最后一个小组件移除时调用）
+     */
+    public void flushPendingWrites() {
+        offlineDataManager.flushOfflineTimestamp();
+    }
+    
     /**
      * 更新离线基准数据
      */
@@ -200,40 +368,16 @@ public class WidgetDataProvider {
     }
     
     /**
-     * 保存游戏数据到SharedPreferences
-     */
-    private void saveGameData(PetData gameData) {
-        try {
-            if (gameData == null) {
-                return;
-            }
-            
-            // 简单的JSON序列化（这里可以用更完善的JSON库）
-            String jsonData = petDataToJson(gameData);
-            
-            SharedPreferences.Editor editor = gameDataPrefs.edit();
-            editor.putString(KEY_GAME_DATA_JSON, jsonData);
-            editor.putLong("save_time", System.currentTimeMillis());
-            editor.apply();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "保存游戏数据失败: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * 从SharedPreferences获取游戏数据
+     * 获取游戏数据
      */
     private PetData getGameData() {
         try {
-            String jsonData = gameDataPrefs.getString(KEY_GAME_DATA_JSON, null);
-            if (jsonData == null || jsonData.isEmpty()) {
-                // Log.d(TAG, "SharedPreferences中没有游戏数据");
+            PetData gameData = store.loadGameData();
+            if (gameData == null) {
+                // Log.d(TAG, "没有游戏数据");
                 return null;
             }
             
-            PetData gameData = jsonToPetData(jsonData);
-            
             // 验证数据有效性
             if (!DataFreshnessChecker.isDataValid(gameData)) {
                 Log.w(TAG, "游戏数据无效");
@@ -268,110 +412,13 @@ public class WidgetDataProvider {
         return defaultData;
     }
     
-    /**
-     * 简单的PetData转JSON（可以替换为更好的JSON库）
-     */
-    private String petDataToJson(PetData data) {
-        if (data == null) {
-            return "{}";
-        }
-        
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"petId\":\"").append(escapeJson(data.petId)).append("\",");
-        json.append("\"petName\":\"").append(escapeJson(data.petName)).append("\",");
-        json.append("\"prefabName\":\"").append(escapeJson(data.prefabName)).append("\",");
-        json.append("\"energy\":").append(data.energy).append(",");
-        json.append("\"satiety\":").append(data.satiety).append(",");
-        json.append("\"isBored\":").append(data.isBored).append(",");
-        json.append("\"purchaseDate\":\"").append(escapeJson(data.purchaseDate)).append("\",");
-        json.append("\"ageInDays\":").append(data.ageInDays).append(",");
-        json.append("\"introduction\":\"").append(escapeJson(data.introduction)).append("\",");
-        json.append("\"lastUpdateTime\":\"").append(escapeJson(data.lastUpdateTime)).append("\"");
-        json.append("}");
-        
-        return json.toString();
-    }
-    
-    /**
-     * 简单的JSON转PetData（可以替换为更好的JSON库）
-     */
-    private PetData jsonToPetData(String json) {
-        if (json == null || json.isEmpty()) {
-            return null;
-        }
-        
-        PetData data = new PetData();
-        
-        // 简单的字符串解析（生产环境建议使用JSON库）
-        try {
-            data.petId = extractJsonString(json, "petId");
-            data.petName = extractJsonString(json, "petName");
-            data.prefabName = extractJsonString(json, "prefabName");
-            data.energy = extractJsonInt(json, "energy");
-            data.satiety = extractJsonInt(json, "satiety");
-            data.isBored = extractJsonBoolean(json, "isBored");
-            data.purchaseDate = extractJsonString(json, "purchaseDate");
-            data.ageInDays = extractJsonInt(json, "ageInDays");
-            data.introduction = extractJsonString(json, "introduction");
-            data.lastUpdateTime = extractJsonString(json, "lastUpdateTime");
-        } catch (Exception e) {
-            Log.e(TAG, "解析JSON失败: " + e.getMessage());
-            return null;
-        }
-        
-        return data;
-    }
-    
-    // 简单的JSON解析辅助方法
-    private String extractJsonString(String json, String key) {
-        String pattern = "\"" + key + "\":\"";
-        int start = json.indexOf(pattern);
-        if (start == -1) return "";
-        start += pattern.length();
-        int end = json.indexOf("\"", start);
-        if (end == -1) return "";
-        return json.substring(start, end);
-    }
-    
-    private int extractJsonInt(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1) return 0;
-        start += pattern.length();
-        int end = json.indexOf(",", start);
-        if (end == -1) end = json.indexOf("}", start);
-        if (end == -1) return 0;
-        try {
-            return Integer.parseInt(json.substring(start, end));
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
-    
-    private boolean extractJsonBoolean(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1) return false;
-        start += pattern.length();
-        int end = json.indexOf(",", start);
-        if (end == -1) end = json.indexOf("}", start);
-        if (end == -1) return false;
-        return json.substring(start, end).equals("true");
-    }
-    
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
-    }
-    
     /**
      * 清除所有数据（用于测试和重置）
      */
     public void clearAllData() {
         try {
-            offlineDataManager.clearOfflineData();
-            gameDataPrefs.edit().clear().apply();
+            store.begin().clearGameData().clearBaseline().commit();
+            snapshot.set(null);
             // Log.d(TAG, "所有数据已清除");
         } catch (Exception e) {
             Log.e(TAG, "清除数据失败: " + e.getMessage());
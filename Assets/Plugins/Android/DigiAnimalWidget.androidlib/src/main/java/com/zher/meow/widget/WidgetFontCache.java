@@ -0,0 +1,128 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.util.TypedValue;
+
+/**
+ * 小组件字体缓存
+ * 像素字体每个进程只解析一次，并按(字号, 颜色, 抗锯齿)缓存预配置好的Paint
+ * 注意：返回的Paint是共享对象，调用方只能用来测量和绘制，不要修改它的属性
+ */
+public class WidgetFontCache {
+    private static final String TAG = "WidgetFontCache";
+    private static final String FONT_ASSET_PATH = "fonts/ark_pixel_font_regular.ttf";
+
+    private static Typeface pixelTypeface;
+    private static boolean fontLoadFailed = false;
+
+    // key = 字号像素值(float bits) << 32 | 颜色，抗锯齿与否分两张表
+    private static final LongSparseArray<Paint> antiAliasPaints = new LongSparseArray<>();
+    private static final LongSparseArray<Paint> pixelPaints = new LongSparseArray<>();
+
+    // 统计计数
+    private static int fontLoadCount = 0;
+    private static int fontLoadFailureCount = 0;
+    private static int paintCreateCount = 0;
+    private static int paintHitCount = 0;
+
+    /**
+     * 获取像素字体（进程内只从assets解析一次）
+     * @return 字体加载失败时返回null
+     */
+    public static synchronized Typeface getTypeface(Context context) {
+        if (pixelTypeface != null || fontLoadFailed) {
+            return pixelTypeface;
+        }
+
+        try {
+            pixelTypeface = Typeface.createFromAsset(context.getApplicationContext().getAssets(), FONT_ASSET_PATH);
+            fontLoadCount++;
+        } catch (Exception e) {
+            // 加载失败后不再重试，避免每一帧都重新解析
+            fontLoadFailed = true;
+            fontLoadFailureCount++;
+            Log.e(TAG, "加载像素字体失败: " + e.getMessage());
+        }
+        return pixelTypeface;
+    }
+
+    /**
+     * 获取预配置好的文本画笔
+     * @param textSizeSp 字号（sp）
+     * @param textColor 文本颜色
+     * @param antiAlias 是否抗锯齿（像素字体按钮不需要抗锯齿）
+     * @return 字体加载失败时返回null
+     */
+    public static synchronized Paint getTextPaint(Context context, int textSizeSp, int textColor, boolean antiAlias) {
+        Typeface typeface = getTypeface(context);
+        if (typeface == null) {
+            return null;
+        }
+
+        // 按实际像素字号做key，系统字体缩放变化后会自然生成新的Paint
+        float textSizePx = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, textSizeSp, context.getResources().getDisplayMetrics());
+        long key = ((long) Float.floatToIntBits(textSizePx) << 32) | (textColor & 0xFFFFFFFFL);
+        LongSparseArray<Paint> paints = antiAliasPaints;
+        if (!antiAlias) {
+            paints = pixelPaints;
+        }
+
+        Paint paint = paints.get(key);
+        if (paint != null) {
+            paintHitCount++;
+            return paint;
+        }
+
+        paint = new Paint();
+        paint.setAntiAlias(antiAlias);
+        paint.setTypeface(typeface);
+        paint.setTextSize(textSizePx);
+        paint.setColor(textColor);
+        paints.put(key, paint);
+        paintCreateCount++;
+        return paint;
+    }
+
+    /**
+     * 清空缓存（字体会在下次使用时重新加载）
+     */
+    public static synchronized void clear() {
+        antiAliasPaints.clear();
+        pixelPaints.clear();
+        pixelTypeface = null;
+        fontLoadFailed = false;
+    }
+
+    public static synchronized int getFontLoadCount() {
+        return fontLoadCount;
+    }
+
+    public static synchronized int getFontLoadFailureCount() {
+        return fontLoadFailureCount;
+    }
+
+    public static synchronized int getPaintCreateCount() {
+        return paintCreateCount;
+    }
+
+    public static synchronized int getPaintHitCount() {
+        return paintHitCount;
+    }
+
+    /**
+     * 获取统计信息（用于调试）
+     */
+    public static synchronized String getStats() {
+        return "WidgetFontCache{" +
+                "fontLoads=" + fontLoadCount +
+                ", fontLoadFailures=" + fontLoadFailureCount +
+                ", paintsCreated=" + paintCreateCount +
+                ", paintHits=" + paintHitCount +
+                ", cachedPaints=" + (antiAliasPaints.size() + pixelPaints.size()) +
+                '}';
+    }
+}
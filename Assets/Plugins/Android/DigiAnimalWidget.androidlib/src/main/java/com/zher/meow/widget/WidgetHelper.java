@@ -135,7 +135,7 @@ public class WidgetHelper {
             
             // 可选：设置成功回调（当用户确认添加小组件时触发）
             Intent callbackIntent = new Intent(context, DigiAnimalWidgetProvider.class);
-            callbackIntent.setAction("com.zher.meow.widget.WIDGET_PINNED");
+            callbackIntent.setAction(DigiAnimalWidgetProvider.ACTION_WIDGET_PINNED);
             
             PendingIntent successCallback = PendingIntent.getBroadcast(
                 context, 
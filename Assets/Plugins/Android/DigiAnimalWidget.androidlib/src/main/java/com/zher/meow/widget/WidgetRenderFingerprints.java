@@ -0,0 +1,191 @@
+package com.zher.meow.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.os.Bundle;
+import android.util.SparseLongArray;
+
+/**
+ * 小组件渲染指纹
+ * 把一次完整更新的显示内容（名称、年龄、精力、饱食、状态、宠物帧、按钮选中状态、布局尺寸）
+ * 压缩成64位指纹，按widgetId记录最后一次推送给启动器的指纹。指纹相同时跳过位图生成和IPC
+ */
+public class WidgetRenderFingerprints {
+    // FNV-1a 64位
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static WidgetRenderFingerprints instance;
+
+    // widgetId -> 最后一次完整推送的指纹
+    private final SparseLongArray pushed = new SparseLongArray();
+    // widgetId -> 布局尺寸（四个dp值各占16位）
+    private final SparseLongArray layoutSizes = new SparseLongArray();
+
+    // 统计
+    private int renderCount = 0;
+    private int skippedCount = 0;
+
+    private WidgetRenderFingerprints() {
+    }
+
+    public static synchronized WidgetRenderFingerprints getInstance() {
+        if (instance == null) {
+            instance = new WidgetRenderFingerprints();
+        }
+        return instance;
+    }
+
+    /**
+     * 计算显示内容的指纹
+     * 宠物帧由预制体、动画状态和播放方式（启动器本地播放或逐帧更新）决定
+     * @param petData 要显示的宠物数据，显示默认信息时为null
+     */
+    public static long compute(PetData petData, int animationState, boolean launcherAnimation,
+                               long layoutSize, int densityDpi) {
+        long hash = FNV_OFFSET;
+        if (petData != null) {
+            hash = mix(hash, 1);
+            hash = mix(hash, petData.petName);
+            hash = mix(hash, petData.prefabName);
+            hash = mix(hash, petData.ageInDays);
+            hash = mix(hash, petData.energy);
+            hash = mix(hash, petData.satiety);
+            hash = mix(hash, getStatusCode(petData));
+        } else {
+            hash = mix(hash, 0);
+        }
+        hash = mix(hash, animationState);
+        hash = mix(hash, launcherAnimation ? 1 : 0);
+        hash = mix(hash, (int) (layoutSize >>> 32));
+        hash = mix(hash, (int) layoutSize);
+        hash = mix(hash, densityDpi);
+        return hash;
+    }
+
+    /**
+     * 状态文本代码，优先级与显示一致：0无，1好困，2好饿，3玩累了
+     */
+    public static int getStatusCode(PetData petData) {
+        if (petData.energy <= OfflineCalculator.SLEEPY_THRESHOLD) {
+            return 1;
+        } else if (petData.satiety <= OfflineCalculator.HUNGRY_THRESHOLD) {
+            return 2;
+        } else if (petData.isBored) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * 指纹与最后一次推送的不同时返回true；相同时计入跳过次数
+     */
+    public synchronized boolean shouldRender(int widgetId, long fingerprint) {
+        int index = pushed.indexOfKey(widgetId);
+        if (index >= 0 && pushed.valueAt(index) == fingerprint) {
+            skippedCount++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 记录已经完整推送的指纹
+     */
+    public synchronized void markPushed(int widgetId, long fingerprint) {
+        pushed.put(widgetId, fingerprint);
+        renderCount++;
+    }
+
+    /**
+     * 小组件的显示内容被局部更新改动后调用，下一次完整更新不会被跳过
+     */
+    public synchronized void invalidate(int widgetId) {
+        pushed.delete(widgetId);
+    }
+
+    /**
+     * 移除已删除小组件的记录
+     */
+    public synchronized void removeWidgets(int[] widgetIds) {
+        for (int widgetId : widgetIds) {
+            pushed.delete(widgetId);
+            layoutSizes.delete(widgetId);
+        }
+    }
+
+    public synchronized void clear() {
+        pushed.clear();
+        layoutSizes.clear();
+    }
+
+    /**
+     * 记录启动器下发的新尺寸（onAppWidgetOptionsChanged）
+     */
+    public synchronized void setLayoutSize(int widgetId, Bundle options) {
+        layoutSizes.put(widgetId, packLayoutSize(options));
+    }
+
+    /**
+     * 获取小组件的布局尺寸，没有记录时向AppWidgetManager查询一次
+     */
+    public long getLayoutSize(AppWidgetManager appWidgetManager, int widgetId) {
+        synchronized (this) {
+            int index = layoutSizes.indexOfKey(widgetId);
+            if (index >= 0) {
+                return layoutSizes.valueAt(index);
+            }
+        }
+        long size = 0;
+        try {
+            size = packLayoutSize(appWidgetManager.getAppWidgetOptions(widgetId));
+        } catch (Exception e) {
+            // 查询失败时按未知尺寸处理
+        }
+        synchronized (this) {
+            layoutSizes.put(widgetId, size);
+        }
+        return size;
+    }
+
+    public synchronized int getRenderCount() {
+        return renderCount;
+    }
+
+    public synchronized int getSkippedCount() {
+        return skippedCount;
+    }
+
+    private static long packLayoutSize(Bundle options) {
+        if (options == null) {
+            return 0;
+        }
+        long minWidth = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH) & 0xFFFF;
+        long minHeight = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_HEIGHT) & 0xFFFF;
+        long maxWidth = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_WIDTH) & 0xFFFF;
+        long maxHeight = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_HEIGHT) & 0xFFFF;
+        return (minWidth << 48) | (minHeight << 32) | (maxWidth << 16) | maxHeight;
+    }
+
+    private static long mix(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return mix(hash, -1);
+        }
+        hash = mix(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash ^= c & 0xFF;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
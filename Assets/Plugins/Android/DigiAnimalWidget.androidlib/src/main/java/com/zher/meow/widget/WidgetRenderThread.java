@@ -0,0 +1,144 @@
+package com.zher.meow.widget;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 小组件渲染线程
+ * 广播处理、数据读取、位图生成和逐帧动画都在这个后台线程上执行，不占用主线程（Unity在前台时与游戏UI竞争）。
+ * 提交的任务可以带合并键：同一个键的任务还在排队时，新任务替换旧任务，只执行最后一次，
+ * 被替换任务的完成回调（goAsync的finish、服务的stopSelf）在最终任务执行后一起调用
+ */
+public class WidgetRenderThread {
+    private static final String TAG = "WidgetRenderThread";
+
+    private static WidgetRenderThread instance;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // 合并键 -> 排队中的任务
+    private final HashMap<String, Request> pending = new HashMap<>();
+
+    // 统计
+    private int submittedCount = 0;
+    private int coalescedCount = 0;
+    private int executedCount = 0;
+
+    /**
+     * 排队中的任务
+     */
+    private class Request implements Runnable {
+        final String key;
+        Runnable work;
+        final ArrayList<Runnable> callbacks = new ArrayList<>(2);
+
+        Request(String key, Runnable work) {
+            this.key = key;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            Runnable[] done;
+            synchronized (WidgetRenderThread.this) {
+                if (key != null) {
+                    pending.remove(key);
+                }
+                task = work;
+                done = callbacks.toArray(new Runnable[callbacks.size()]);
+                executedCount++;
+            }
+
+            try {
+                task.run();
+            } catch (Exception e) {
+                Log.e(TAG, "小组件渲染任务失败: " + e.getMessage());
+            } finally {
+                for (Runnable callback : done) {
+                    try {
+                        callback.run();
+                    } catch (Exception e) {
+                        Log.e(TAG, "渲染任务完成回调失败: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private WidgetRenderThread() {
+        thread = new HandlerThread("WidgetRender", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized WidgetRenderThread getInstance() {
+        if (instance == null) {
+            instance = new WidgetRenderThread();
+        }
+        return instance;
+    }
+
+    public Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    /**
+     * 当前是否在渲染线程上
+     */
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == thread.getLooper();
+    }
+
+    /**
+     * 提交任务
+     * @param key 合并键，null表示不合并
+     * @param onDone 任务执行后（包括被合并时）调用，可以为null
+     */
+    public synchronized void submit(String key, Runnable work, Runnable onDone) {
+        submittedCount++;
+        if (key != null) {
+            Request queued = pending.get(key);
+            if (queued != null) {
+                queued.work = work;
+                if (onDone != null) {
+                    queued.callbacks.add(onDone);
+                }
+                coalescedCount++;
+                return;
+            }
+        }
+
+        Request request = new Request(key, work);
+        if (onDone != null) {
+            request.callbacks.add(onDone);
+        }
+        if (key != null) {
+            pending.put(key, request);
+        }
+        handler.post(request);
+    }
+
+    public synchronized int getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public synchronized int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public synchronized int getExecutedCount() {
+        return executedCount;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,799 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 小组件统一状态存储
+ * 游戏数据、离线基准数据、Unity下发的小组件数据、设置和每个小组件的动画状态都存放在同一个
+ * 内存映射文件的定长记录中，替代原来的三个SharedPreferences文件。
+ * 每次逻辑更新是一个事务：修改先暂存在事务中，不持有锁；提交时加锁，在最新数据上应用事务写过的字段，
+ * 只写内容有变化的分区，一次force落盘。
+ * 文件分A/B两个槽位，每次提交写入另一个槽位并带上序号和CRC32，写到一半断电也总有一个完整的槽位
+ */
+public class WidgetStateStore {
+    private static final String TAG = "WidgetStateStore";
+    private static final String FILE_NAME = "widget_state.bin";
+    // 第一版快照文件（只有游戏数据和离线基准），启动时删除
+    private static final String LEGACY_SNAPSHOT_FILE = "widget_pet_snapshot.bin";
+
+    // 旧版SharedPreferences，首次启动时迁移
+    private static final String LEGACY_WIDGET_PREFS = "DigiAnimalWidgetData";
+    private static final String LEGACY_GAME_DATA_PREFS = "widget_game_data";
+    private static final String LEGACY_OFFLINE_PREFS = "widget_offline_data";
+
+    private static final int MAGIC = 0x44475753; // "DGWS"
+    private static final int LAYOUT_VERSION = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // 槽位头：magic(4) + 布局版本(4) + 序号(8) + 数据长度(4) + CRC32(4)
+    private static final int HDR_MAGIC = 0;
+    private static final int HDR_VERSION = 4;
+    private static final int HDR_SEQUENCE = 8;
+    private static final int HDR_LENGTH = 16;
+    private static final int HDR_CRC = 20;
+    private static final int HEADER_SIZE = 24;
+
+    // 定长字符串槽位的最大UTF-8字节数（前面另有2字节长度）
+    // 按Unity端的输入限制确定：名字最多10个显示单位（PetInfoEditDialog.maxNameLength，中文算2），
+    // 简介最多50个显示单位（maxIntroLength）；一个UTF-16字符最多3字节UTF-8，
+    // 名字不超过30字节、简介不超过150字节，槽位留有余量。
+    // 超过槽位的值（不经过输入框的数据）在字符边界截断并打警告日志
+    private static final int STR_ID = 64;
+    private static final int STR_NAME = 96;
+    private static final int STR_PREFAB = 48;
+    private static final int STR_DATE = 32;
+    private static final int STR_INTRO = 256;
+    private static final int STR_TIME = 32;
+
+    // 最多保存的小组件动画状态数量
+    public static final int MAX_ANIMATION_STATES = 32;
+
+    // 分区存在标记
+    private static final int FLAG_GAME_DATA = 1;
+    private static final int FLAG_BASELINE = 1 << 1;
+    private static final int FLAG_WIDGET = 1 << 2;
+    private static final int FLAG_SETTINGS = 1 << 3;
+    private static final int FLAG_ANIMATION = 1 << 4;
+
+    // ========== 数据区布局 ==========
+
+    private static final int OFF_FLAGS = 0;
+
+    // 游戏数据(PetData)
+    private static final int OFF_PET_ENERGY = OFF_FLAGS + 4;
+    private static final int OFF_PET_SATIETY = OFF_PET_ENERGY + 4;
+    private static final int OFF_PET_AGE = OFF_PET_SATIETY + 4;
+    private static final int OFF_PET_BORED = OFF_PET_AGE + 4;
+    private static final int OFF_PET_ID = OFF_PET_BORED + 4;
+    private static final int OFF_PET_NAME = OFF_PET_ID + 2 + STR_ID;
+    private static final int OFF_PET_PREFAB = OFF_PET_NAME + 2 + STR_NAME;
+    private static final int OFF_PET_PURCHASE = OFF_PET_PREFAB + 2 + STR_PREFAB;
+    private static final int OFF_PET_INTRO = OFF_PET_PURCHASE + 2 + STR_DATE;
+    private static final int OFF_PET_UPDATE_TIME = OFF_PET_INTRO + 2 + STR_INTRO;
+    private static final int GAME_END = OFF_PET_UPDATE_TIME + 2 + STR_TIME;
+
+    // 离线基准数据(OfflineBaseData)
+    private static final int OFF_BASE_TIMESTAMP = GAME_END;
+    private static final int OFF_BASE_ENERGY = OFF_BASE_TIMESTAMP + 8;
+    private static final int OFF_BASE_SATIETY = OFF_BASE_ENERGY + 4;
+    private static final int OFF_BASE_BORED = OFF_BASE_SATIETY + 4;
+    private static final int OFF_BASE_PET_ID = OFF_BASE_BORED + 4;
+    private static final int OFF_BASE_PET_NAME = OFF_BASE_PET_ID + 2 + STR_ID;
+    private static final int OFF_BASE_PREFAB = OFF_BASE_PET_NAME + 2 + STR_NAME;
+    private static final int BASELINE_END = OFF_BASE_PREFAB + 2 + STR_PREFAB;
+
+    // 最后离线计算时间（更新最频繁，单独一个分区）
+    private static final int OFF_BASE_LAST_CALC = BASELINE_END;
+    private static final int CALC_END = OFF_BASE_LAST_CALC + 8;
+
+    // Unity下发的小组件数据(WidgetData，不含selectedPetData)
+    private static final int OFF_WIDGET_ENABLED = CALC_END;
+    private static final int OFF_WIDGET_PET_ID = OFF_WIDGET_ENABLED + 4;
+    private static final int OFF_WIDGET_UPDATE_TIME = OFF_WIDGET_PET_ID + 2 + STR_ID;
+    private static final int WIDGET_END = OFF_WIDGET_UPDATE_TIME + 2 + STR_TIME;
+
+    // 设置
+    private static final int OFF_LAUNCHER_ANIMATION = WIDGET_END;
+    private static final int SETTINGS_END = OFF_LAUNCHER_ANIMATION + 4;
+
+    // 每个小组件的动画状态：默认状态 + 数量 + (widgetId, 状态码)数组
+    private static final int OFF_ANIM_DEFAULT = SETTINGS_END;
+    private static final int OFF_ANIM_COUNT = OFF_ANIM_DEFAULT + 4;
+    private static final int OFF_ANIM_ENTRIES = OFF_ANIM_COUNT + 4;
+    private static final int ANIM_END = OFF_ANIM_ENTRIES + MAX_ANIMATION_STATES * 8;
+
+    private static final int PAYLOAD_SIZE = ANIM_END;
+    private static final int SLOT_SIZE = 2048;
+    private static final int SLOT_COUNT = 2;
+    private static final int FILE_SIZE = SLOT_SIZE * SLOT_COUNT;
+
+    // 分区（脏标记的粒度）
+    private static final int SECTION_FLAGS = 0;
+    private static final int SECTION_GAME = 1;
+    private static final int SECTION_BASELINE = 2;
+    private static final int SECTION_CALC = 3;
+    private static final int SECTION_WIDGET = 4;
+    private static final int SECTION_SETTINGS = 5;
+    private static final int SECTION_ANIMATION = 6;
+    private static final int[] SECTION_START = {OFF_FLAGS, OFF_PET_ENERGY, GAME_END, BASELINE_END, CALC_END, WIDGET_END, SETTINGS_END};
+    private static final int[] SECTION_END = {OFF_PET_ENERGY, GAME_END, BASELINE_END, CALC_END, WIDGET_END, SETTINGS_END, ANIM_END};
+    private static final int ALL_SECTIONS = (1 << SECTION_START.length) - 1;
+
+    private static WidgetStateStore instance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 映射失败时为null，此时只在内存中保存（本次进程有效）
+    private MappedByteBuffer mapped;
+
+    // 当前有效数据的内存镜像，读取都从这里进行
+    private final byte[] current = new byte[PAYLOAD_SIZE];
+    private final ByteBuffer currentBuffer = ByteBuffer.wrap(current);
+
+    // 当前有效槽位，-1表示文件中还没有有效数据
+    private int activeSlot = -1;
+    private long sequence = 0;
+    // 每个槽位保存的序号，-1表示槽位无效
+    private final long[] slotSequence = {-1, -1};
+    // 产生当前槽位的那次提交改动的分区
+    private int lastCommitMask = ALL_SECTIONS;
+
+    private final CRC32 crc = new CRC32();
+
+    // 写入统计
+    private long commitCount = 0;
+    private long skippedCommitCount = 0;
+    private long totalBytesWritten = 0;
+    private int lastCommitBytes = 0;
+
+    private WidgetStateStore(Context context) {
+        Context appContext = context.getApplicationContext();
+        File dir = appContext.getFilesDir();
+        try {
+            RandomAccessFile raf = new RandomAccessFile(new File(dir, FILE_NAME), "rw");
+            try {
+                if (raf.length() != FILE_SIZE) {
+                    raf.setLength(FILE_SIZE);
+                }
+                // 映射建立后即使关闭文件描述符也仍然有效
+                mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            } finally {
+                raf.close();
+            }
+            selectActiveSlot();
+        } catch (Exception e) {
+            Log.e(TAG, "打开状态文件失败，本次只在内存中保存: " + e.getMessage());
+            mapped = null;
+        }
+
+        if (activeSlot < 0) {
+            migrateLegacyPrefs(appContext);
+        }
+
+        File legacySnapshot = new File(dir, LEGACY_SNAPSHOT_FILE);
+        if (legacySnapshot.exists() && !legacySnapshot.delete()) {
+            Log.w(TAG, "删除旧版快照文件失败");
+        }
+    }
+
+    public static synchronized WidgetStateStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new WidgetStateStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 开始一个写事务
+     * 修改只暂存在事务中，不持有锁；commit()时才加锁写入。没有commit的事务直接丢弃即可，不会阻塞其他线程
+     */
+    public Transaction begin() {
+        lock.lock();
+        try {
+            return new Transaction();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========== 读取 ==========
+
+    public boolean hasGameData() {
+        return hasFlag(FLAG_GAME_DATA);
+    }
+
+    public boolean hasBaseline() {
+        return hasFlag(FLAG_BASELINE);
+    }
+
+    /**
+     * 读取游戏数据
+     * @return 没有数据时返回null
+     */
+    public PetData loadGameData() {
+        lock.lock();
+        try {
+            if ((currentBuffer.getInt(OFF_FLAGS) & FLAG_GAME_DATA) == 0) {
+                return null;
+            }
+            ByteBuffer in = currentBuffer;
+            PetData data = new PetData();
+            data.energy = in.getInt(OFF_PET_ENERGY);
+            data.satiety = in.getInt(OFF_PET_SATIETY);
+            data.ageInDays = in.getInt(OFF_PET_AGE);
+            data.isBored = in.getInt(OFF_PET_BORED) != 0;
+            data.petId = getString(in, OFF_PET_ID);
+            data.petName = getString(in, OFF_PET_NAME);
+            data.prefabName = getString(in, OFF_PET_PREFAB);
+            data.purchaseDate = getString(in, OFF_PET_PURCHASE);
+            data.introduction = getString(in, OFF_PET_INTRO);
+            data.lastUpdateTime = getString(in, OFF_PET_UPDATE_TIME);
+            return data;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取离线基准数据
+     * @return 没有数据时返回null
+     */
+    public OfflineDataManager.OfflineBaseData loadBaseline() {
+        lock.lock();
+        try {
+            if ((currentBuffer.getInt(OFF_FLAGS) & FLAG_BASELINE) == 0) {
+                return null;
+            }
+            ByteBuffer in = currentBuffer;
+            OfflineDataManager.OfflineBaseData data = new OfflineDataManager.OfflineBaseData();
+            data.baseTimestamp = in.getLong(OFF_BASE_TIMESTAMP);
+            data.lastCalculationTime = in.getLong(OFF_BASE_LAST_CALC);
+            data.baseEnergy = in.getInt(OFF_BASE_ENERGY);
+            data.baseSatiety = in.getInt(OFF_BASE_SATIETY);
+            data.baseIsBored = in.getInt(OFF_BASE_BORED) != 0;
+            data.petId = getString(in, OFF_BASE_PET_ID);
+            data.petName = getString(in, OFF_BASE_PET_NAME);
+            data.prefabName = getString(in, OFF_BASE_PREFAB);
+            return data;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取Unity下发的小组件数据，selectedPetData取自游戏数据
+     * @return 没有数据时返回null
+     */
+    public WidgetData loadWidgetData() {
+        lock.lock();
+        try {
+            if ((currentBuffer.getInt(OFF_FLAGS) & FLAG_WIDGET) == 0) {
+                return null;
+            }
+            WidgetData data = new WidgetData();
+            data.widgetEnabled = currentBuffer.getInt(OFF_WIDGET_ENABLED) != 0;
+            data.selectedPetId = getString(currentBuffer, OFF_WIDGET_PET_ID);
+            data.lastUpdateTime = getString(currentBuffer, OFF_WIDGET_UPDATE_TIME);
+            data.selectedPetData = loadGameData();
+            return data;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 是否使用启动器本地播放动画，没有设置过时默认开启
+     */
+    public boolean isLauncherAnimationEnabled() {
+        lock.lock();
+        try {
+            if ((currentBuffer.getInt(OFF_FLAGS) & FLAG_SETTINGS) == 0) {
+                return true;
+            }
+            return currentBuffer.getInt(OFF_LAUNCHER_ANIMATION) != 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取每个小组件的动画状态到states
+     * @return 没有独立状态的小组件使用的默认状态码
+     */
+    public int loadAnimationStates(SparseIntArray states) {
+        lock.lock();
+        try {
+            states.clear();
+            if ((currentBuffer.getInt(OFF_FLAGS) & FLAG_ANIMATION) == 0) {
+                return WidgetAnimationStates.STATE_SIT;
+            }
+            int count = Math.min(currentBuffer.getInt(OFF_ANIM_COUNT), MAX_ANIMATION_STATES);
+            for (int i = 0; i < count; i++) {
+                int offset = OFF_ANIM_ENTRIES + i * 8;
+                states.put(currentBuffer.getInt(offset), currentBuffer.getInt(offset + 4));
+            }
+            return currentBuffer.getInt(OFF_ANIM_DEFAULT);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========== 统计 ==========
+
+    /**
+     * 实际提交（写盘）的次数
+     */
+    public long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * 因为没有字段变化而跳过的提交次数
+     */
+    public long getSkippedCommitCount() {
+        return skippedCommitCount;
+    }
+
+    public long getTotalBytesWritten() {
+        return totalBytesWritten;
+    }
+
+    public int getLastCommitBytes() {
+        return lastCommitBytes;
+    }
+
+    /**
+     * 写满一个槽位的字节数，和每次提交的字节数对比可以看出写放大
+     */
+    public int getFullSlotBytes() {
+        return HEADER_SIZE + PAYLOAD_SIZE;
+    }
+
+    public boolean isPersistent() {
+        return mapped != null;
+    }
+
+    /**
+     * 写事务
+     * 所有修改先作用在开始时数据区的副本上，并记录写过哪些字节、设置和清除了哪些分区标记。
+     * 提交时在加锁后的最新数据上只应用这些字段，begin和commit之间其他事务的提交不会被覆盖
+     */
+    public final class Transaction {
+        private final byte[] work = new byte[PAYLOAD_SIZE];
+        private final ByteBuffer out = ByteBuffer.wrap(work);
+        // 本事务写过的字节
+        private final boolean[] written = new boolean[PAYLOAD_SIZE];
+        private int flagsSet = 0;
+        private int flagsCleared = 0;
+        // 相对开始时的数据有变化的分区（用于hasChanges）
+        private int dirtyMask = 0;
+        private boolean finished = false;
+
+        private Transaction() {
+            System.arraycopy(current, 0, work, 0, PAYLOAD_SIZE);
+        }
+
+        public Transaction putGameData(PetData data) {
+            if (data == null) {
+                return clearGameData();
+            }
+            setFlag(FLAG_GAME_DATA, true);
+            setInt(SECTION_GAME, OFF_PET_ENERGY, data.energy);
+            setInt(SECTION_GAME, OFF_PET_SATIETY, data.satiety);
+            setInt(SECTION_GAME, OFF_PET_AGE, data.ageInDays);
+            setInt(SECTION_GAME, OFF_PET_BORED, data.isBored ? 1 : 0);
+            setString(SECTION_GAME, OFF_PET_ID, data.petId, STR_ID);
+            setString(SECTION_GAME, OFF_PET_NAME, data.petName, STR_NAME);
+            setString(SECTION_GAME, OFF_PET_PREFAB, data.prefabName, STR_PREFAB);
+            setString(SECTION_GAME, OFF_PET_PURCHASE, data.purchaseDate, STR_DATE);
+            setString(SECTION_GAME, OFF_PET_INTRO, data.introduction, STR_INTRO);
+            setString(SECTION_GAME, OFF_PET_UPDATE_TIME, data.lastUpdateTime, STR_TIME);
+            return this;
+        }
+
+        public Transaction clearGameData() {
+            setFlag(FLAG_GAME_DATA, false);
+            return this;
+        }
+
+        public Transaction putBaseline(OfflineDataManager.OfflineBaseData data) {
+            if (data == null) {
+                return clearBaseline();
+            }
+            setFlag(FLAG_BASELINE, true);
+            setLong(SECTION_BASELINE, OFF_BASE_TIMESTAMP, data.baseTimestamp);
+            setInt(SECTION_BASELINE, OFF_BASE_ENERGY, data.baseEnergy);
+            setInt(SECTION_BASELINE, OFF_BASE_SATIETY, data.baseSatiety);
+            setInt(SECTION_BASELINE, OFF_BASE_BORED, data.baseIsBored ? 1 : 0);
+            setString(SECTION_BASELINE, OFF_BASE_PET_ID, data.petId, STR_ID);
+            setString(SECTION_BASELINE, OFF_BASE_PET_NAME, data.petName, STR_NAME);
+            setString(SECTION_BASELINE, OFF_BASE_PREFAB, data.prefabName, STR_PREFAB);
+            setLong(SECTION_CALC, OFF_BASE_LAST_CALC, data.lastCalculationTime);
+            return this;
+        }
+
+        /**
+         * 只更新最后离线计算时间，还没有基准数据时忽略
+         */
+        public Transaction putLastCalculationTime(long timestamp) {
+            if ((out.getInt(OFF_FLAGS) & FLAG_BASELINE) != 0) {
+                setLong(SECTION_CALC, OFF_BASE_LAST_CALC, timestamp);
+            }
+            return this;
+        }
+
+        public Transaction clearBaseline() {
+            setFlag(FLAG_BASELINE, false);
+            return this;
+        }
+
+        /**
+         * 保存小组件数据的自身字段，selectedPetData需要另外用putGameData保存
+         */
+        public Transaction putWidgetData(WidgetData data) {
+            if (data == null) {
+                return clearWidgetData();
+            }
+            setFlag(FLAG_WIDGET, true);
+            setInt(SECTION_WIDGET, OFF_WIDGET_ENABLED, data.widgetEnabled ? 1 : 0);
+            setString(SECTION_WIDGET, OFF_WIDGET_PET_ID, data.selectedPetId, STR_ID);
+            setString(SECTION_WIDGET, OFF_WIDGET_UPDATE_TIME, data.lastUpdateTime, STR_TIME);
+            return this;
+        }
+
+        public Transaction clearWidgetData() {
+            setFlag(FLAG_WIDGET, false);
+            return this;
+        }
+
+        public Transaction putLauncherAnimationEnabled(boolean enabled) {
+            setFlag(FLAG_SETTINGS, true);
+            setInt(SECTION_SETTINGS, OFF_LAUNCHER_ANIMATION, enabled ? 1 : 0);
+            return this;
+        }
+
+        /**
+         * 保存所有小组件的动画状态，超过MAX_ANIMATION_STATES的部分丢弃
+         */
+        public Transaction putAnimationStates(int defaultState, SparseIntArray states) {
+            int count = Math.min(states.size(), MAX_ANIMATION_STATES);
+            if (states.size() > MAX_ANIMATION_STATES) {
+                Log.w(TAG, "小组件动画状态过多，只保存前" + MAX_ANIMATION_STATES + "个");
+            }
+            setFlag(FLAG_ANIMATION, true);
+            setInt(SECTION_ANIMATION, OFF_ANIM_DEFAULT, defaultState);
+            setInt(SECTION_ANIMATION, OFF_ANIM_COUNT, count);
+            for (int i = 0; i < MAX_ANIMATION_STATES; i++) {
+                int offset = OFF_ANIM_ENTRIES + i * 8;
+                setInt(SECTION_ANIMATION, offset, i < count ? states.keyAt(i) : 0);
+                setInt(SECTION_ANIMATION, offset + 4, i < count ? states.valueAt(i) : 0);
+            }
+            return this;
+        }
+
+        public boolean hasChanges() {
+            return dirtyMask != 0;
+        }
+
+        /**
+         * 提交事务：加锁，把本事务写过的字段应用到最新数据上，只写内容有变化的分区
+         * @return 写入的字节数；没有变化时返回0，写入失败返回-1
+         */
+        public int commit() {
+            if (finished) {
+                throw new IllegalStateException("事务已提交");
+            }
+            finished = true;
+            lock.lock();
+            try {
+                for (int i = 0; i < PAYLOAD_SIZE; i++) {
+                    if (!written[i]) {
+                        work[i] = current[i];
+                    }
+                }
+                out.putInt(OFF_FLAGS, (currentBuffer.getInt(OFF_FLAGS) | flagsSet) & ~flagsCleared);
+
+                int changedMask = 0;
+                for (int section = 0; section < SECTION_START.length; section++) {
+                    for (int i = SECTION_START[section]; i < SECTION_END[section]; i++) {
+                        if (work[i] != current[i]) {
+                            changedMask |= 1 << section;
+                            break;
+                        }
+                    }
+                }
+                if (changedMask == 0) {
+                    skippedCommitCount++;
+                    return 0;
+                }
+                int bytes = writeSlot(work, changedMask);
+                if (bytes < 0) {
+                    return -1;
+                }
+                System.arraycopy(work, 0, current, 0, PAYLOAD_SIZE);
+                return bytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void setFlag(int flag, boolean present) {
+            int flags = out.getInt(OFF_FLAGS);
+            if (present) {
+                flagsSet |= flag;
+                flagsCleared &= ~flag;
+            } else {
+                flagsCleared |= flag;
+                flagsSet &= ~flag;
+            }
+            int value = present ? (flags | flag) : (flags & ~flag);
+            if (value != flags) {
+                out.putInt(OFF_FLAGS, value);
+                dirtyMask |= 1 << SECTION_FLAGS;
+            }
+        }
+
+        private void setInt(int section, int offset, int value) {
+            Arrays.fill(written, offset, offset + 4, true);
+            if (out.getInt(offset) != value) {
+                out.putInt(offset, value);
+                dirtyMask |= 1 << section;
+            }
+        }
+
+        private void setLong(int section, int offset, long value) {
+            Arrays.fill(written, offset, offset + 8, true);
+            if (out.getLong(offset) != value) {
+                out.putLong(offset, value);
+                dirtyMask |= 1 << section;
+            }
+        }
+
+        /**
+         * 定长字符串：2字节长度 + 最多maxBytes字节UTF-8，超长时在字符边界截断，剩余部分补0
+         */
+        private void setString(int section, int offset, String value, int maxBytes) {
+            byte[] bytes = value != null ? value.getBytes(UTF_8) : new byte[0];
+            int length = Math.min(bytes.length, maxBytes);
+            // 不要把多字节字符截成两半
+            while (length > 0 && length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+
+            Arrays.fill(written, offset, offset + 2 + maxBytes, true);
+            boolean changed = out.getShort(offset) != length;
+            for (int i = 0; i < length && !changed; i++) {
+                changed = work[offset + 2 + i] != bytes[i];
+            }
+            if (!changed) {
+                return;
+            }
+            if (length < bytes.length) {
+                Log.w(TAG, "字符串超过槽位长度，已截断(" + bytes.length + " > " + maxBytes + "字节): " + value);
+            }
+
+            out.putShort(offset, (short) length);
+            System.arraycopy(bytes, 0, work, offset + 2, length);
+            for (int i = length; i < maxBytes; i++) {
+                work[offset + 2 + i] = 0;
+            }
+            dirtyMask |= 1 << section;
+        }
+    }
+
+    // ========== 内部实现 ==========
+
+    private boolean hasFlag(int flag) {
+        lock.lock();
+        try {
+            return (currentBuffer.getInt(OFF_FLAGS) & flag) != 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把数据写入非当前槽位：先写数据再写头，最后一次force
+     * 目标槽位保存的是上上次提交的数据，只需要补写上次和这次改动的分区；
+     * 头里的CRC覆盖整个数据区，没写完整的槽位读取时会被丢弃
+     * @return 写入的字节数，失败返回-1
+     */
+    private int writeSlot(byte[] payload, int dirtyMask) {
+        crc.reset();
+        crc.update(payload, 0, PAYLOAD_SIZE);
+        long newSequence = sequence + 1;
+
+        int bytes = HEADER_SIZE;
+        if (mapped != null) {
+            int targetSlot = activeSlot == 0 ? 1 : 0;
+            int slotOffset = targetSlot * SLOT_SIZE;
+            int writeMask = slotSequence[targetSlot] >= 0 && slotSequence[targetSlot] == sequence - 1
+                    ? dirtyMask | lastCommitMask
+                    : ALL_SECTIONS;
+            try {
+                ByteBuffer dst = mapped.duplicate();
+                for (int section = 0; section < SECTION_START.length; section++) {
+                    if ((writeMask & (1 << section)) == 0) {
+                        continue;
+                    }
+                    int start = SECTION_START[section];
+                    int length = SECTION_END[section] - start;
+                    dst.position(slotOffset + HEADER_SIZE + start);
+                    dst.put(payload, start, length);
+                    bytes += length;
+                }
+
+                mapped.putInt(slotOffset + HDR_MAGIC, MAGIC);
+                mapped.putInt(slotOffset + HDR_VERSION, LAYOUT_VERSION);
+                mapped.putLong(slotOffset + HDR_SEQUENCE, newSequence);
+                mapped.putInt(slotOffset + HDR_LENGTH, PAYLOAD_SIZE);
+                mapped.putInt(slotOffset + HDR_CRC, (int) crc.getValue());
+                mapped.force();
+            } catch (Exception e) {
+                Log.e(TAG, "写入状态文件失败: " + e.getMessage());
+                // 槽位可能只写了一半，下次提交需要整槽重写
+                slotSequence[targetSlot] = -1;
+                return -1;
+            }
+            slotSequence[targetSlot] = newSequence;
+            activeSlot = targetSlot;
+        } else {
+            bytes = 0;
+        }
+
+        sequence = newSequence;
+        lastCommitMask = dirtyMask;
+        commitCount++;
+        totalBytesWritten += bytes;
+        lastCommitBytes = bytes;
+        return bytes;
+    }
+
+    /**
+     * 启动时校验两个槽位，选择序号较大的有效槽位，并加载到内存镜像
+     */
+    private void selectActiveSlot() {
+        byte[] slotData = new byte[PAYLOAD_SIZE];
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            int slotOffset = slot * SLOT_SIZE;
+            if (mapped.getInt(slotOffset + HDR_MAGIC) != MAGIC
+                    || mapped.getInt(slotOffset + HDR_VERSION) != LAYOUT_VERSION
+                    || mapped.getInt(slotOffset + HDR_LENGTH) != PAYLOAD_SIZE) {
+                continue;
+            }
+
+            ByteBuffer src = mapped.duplicate();
+            src.position(slotOffset + HEADER_SIZE);
+            src.get(slotData, 0, PAYLOAD_SIZE);
+            crc.reset();
+            crc.update(slotData, 0, PAYLOAD_SIZE);
+            if ((int) crc.getValue() != mapped.getInt(slotOffset + HDR_CRC)) {
+                Log.w(TAG, "状态文件槽位校验失败: " + slot);
+                continue;
+            }
+
+            long seq = mapped.getLong(slotOffset + HDR_SEQUENCE);
+            slotSequence[slot] = seq;
+            if (activeSlot < 0 || seq > sequence) {
+                activeSlot = slot;
+                sequence = seq;
+                System.arraycopy(slotData, 0, current, 0, PAYLOAD_SIZE);
+            }
+        }
+    }
+
+    /**
+     * 从旧版的三个SharedPreferences文件迁移数据，一次提交写入；迁移成功后清空旧文件
+     */
+    private void migrateLegacyPrefs(Context context) {
+        SharedPreferences widgetPrefs = context.getSharedPreferences(LEGACY_WIDGET_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences gamePrefs = context.getSharedPreferences(LEGACY_GAME_DATA_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences offlinePrefs = context.getSharedPreferences(LEGACY_OFFLINE_PREFS, Context.MODE_PRIVATE);
+
+        Transaction tx = begin();
+        try {
+            String gameJson = gamePrefs.getString("game_data_json", null);
+            if (gameJson != null && !gameJson.isEmpty()) {
+                tx.putGameData(PetDataJsonCodec.readPetData(gameJson));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "迁移游戏数据失败: " + e.getMessage());
+        }
+
+        try {
+            if (offlinePrefs.contains("offline_base_timestamp")
+                    && offlinePrefs.contains("offline_base_energy")
+                    && offlinePrefs.contains("offline_base_satiety")) {
+                OfflineDataManager.OfflineBaseData baseline = new OfflineDataManager.OfflineBaseData();
+                baseline.petId = offlinePrefs.getString("offline_pet_id", "");
+                baseline.petName = offlinePrefs.getString("offline_pet_name", "我的宠物");
+                baseline.prefabName = offlinePrefs.getString("offline_prefab_name", "Pet_CatBrown");
+                baseline.baseEnergy = offlinePrefs.getInt("offline_base_energy", 100);
+                baseline.baseSatiety = offlinePrefs.getInt("offline_base_satiety", 100);
+                baseline.baseIsBored = offlinePrefs.getBoolean("offline_base_is_bored", false);
+                baseline.baseTimestamp = offlinePrefs.getLong("offline_base_timestamp", System.currentTimeMillis());
+                baseline.lastCalculationTime = offlinePrefs.getLong("offline_last_calculation_time", baseline.baseTimestamp);
+                tx.putBaseline(baseline);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "迁移离线基准数据失败: " + e.getMessage());
+        }
+
+        try {
+            String widgetJson = widgetPrefs.getString("widget_data", null);
+            if (widgetJson != null && !widgetJson.isEmpty()) {
+                tx.putWidgetData(PetDataJsonCodec.readWidgetData(widgetJson));
+            }
+            if (widgetPrefs.contains("launcher_animation_enabled")) {
+                tx.putLauncherAnimationEnabled(widgetPrefs.getBoolean("launcher_animation_enabled", true));
+            }
+
+            String encodedStates = widgetPrefs.getString("widget_states", null);
+            String legacyState = widgetPrefs.getString("widget_state", null);
+            if (encodedStates != null || legacyState != null) {
+                SparseIntArray states = new SparseIntArray();
+                if (encodedStates != null) {
+                    parseAnimationStates(encodedStates, states);
+                }
+                tx.putAnimationStates(WidgetAnimationStates.toStateCode(legacyState), states);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "迁移小组件数据失败: " + e.getMessage());
+        }
+
+        if (!tx.hasChanges()) {
+            return;
+        }
+
+        int bytes = tx.commit();
+        if (bytes > 0) {
+            widgetPrefs.edit().clear().apply();
+            gamePrefs.edit().clear().apply();
+            offlinePrefs.edit().clear().apply();
+            Log.i(TAG, "旧版SharedPreferences数据已迁移: " + bytes + " bytes");
+        }
+    }
+
+    /**
+     * 解析旧版动画状态字符串 "widgetId:状态码,widgetId:状态码"
+     */
+    private static void parseAnimationStates(String encoded, SparseIntArray states) {
+        int length = encoded.length();
+        int pos = 0;
+        while (pos < length) {
+            int colon = encoded.indexOf(':', pos);
+            if (colon < 0) {
+                break;
+            }
+            int end = encoded.indexOf(',', colon);
+            if (end < 0) {
+                end = length;
+            }
+            states.put(Integer.parseInt(encoded.substring(pos, colon)),
+                    Integer.parseInt(encoded.substring(colon + 1, end)));
+            pos = end + 1;
+        }
+    }
+
+    private static String getString(ByteBuffer in, int offset) {
+        int length = in.getShort(offset);
+        if (length <= 0) {
+            return "";
+        }
+        return new String(in.array(), offset + 2, length, UTF_8);
+    }
+}
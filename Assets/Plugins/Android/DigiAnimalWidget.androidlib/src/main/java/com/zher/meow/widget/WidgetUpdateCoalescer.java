@@ -0,0 +1,196 @@
+package com.zher.meow.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+
+import java.util.ArrayList;
+
+/**
+ * 小组件刷新合并
+ * 游戏保存时几个刷新来源（Unity的updateWidgetData、数值变化闹钟、REFRESH_DATA、WIDGET_PINNED、
+ * 系统的APPWIDGET_UPDATE、动画结束后的恢复）往往同时到达。第一个请求到达后等待一个短窗口，
+ * 窗口内的请求合并成一次：数据只刷新一次，每个小组件按窗口结束时的最新数据只渲染一次。
+ * 窗口从第一个请求开始计算，持续到达的请求不会无限推迟刷新
+ */
+public class WidgetUpdateCoalescer {
+    private static final String TAG = "WidgetUpdateCoalescer";
+
+    // 数据刷新方式，合并时取最大值
+    public static final int DATA_NONE = 0;
+    public static final int DATA_PERIODIC = 1; // periodicOfflineUpdate：只在离线数值变化时发布新快照
+    public static final int DATA_REFRESH = 2;  // refreshSnapshot：重新选择最佳数据源
+
+    public static final long DEFAULT_WINDOW_MILLIS = 150;
+    // 广播的goAsync只有约10秒，窗口不能太长
+    public static final long MAX_WINDOW_MILLIS = 2000;
+
+    private static WidgetUpdateCoalescer instance;
+
+    private final Handler handler;
+    private long windowMillis = DEFAULT_WINDOW_MILLIS;
+
+    // 当前窗口内合并的请求
+    private Context context;
+    private boolean flushScheduled = false;
+    private boolean renderAll = false;
+    private final SparseBooleanArray dirtyWidgets = new SparseBooleanArray();
+    private int dataMode = DATA_NONE;
+    private final ArrayList<Runnable> callbacks = new ArrayList<>();
+
+    // 统计
+    private int requestCount = 0;
+    private int flushCount = 0;
+    private int renderedWidgetCount = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private WidgetUpdateCoalescer() {
+        handler = new Handler(WidgetRenderThread.getInstance().getLooper());
+    }
+
+    public static synchronized WidgetUpdateCoalescer getInstance() {
+        if (instance == null) {
+            instance = new WidgetUpdateCoalescer();
+        }
+        return instance;
+    }
+
+    /**
+     * 请求刷新所有小组件
+     */
+    public void requestAll(Context context, int dataMode, Runnable onDone) {
+        request(context, null, dataMode, onDone);
+    }
+
+    /**
+     * 请求刷新
+     * @param widgetIds 要渲染的小组件，null表示所有小组件
+     * @param dataMode 渲染前的数据刷新方式（DATA_NONE/DATA_PERIODIC/DATA_REFRESH）
+     * @param onDone 合并后的刷新完成时调用（goAsync的finish、服务的stopSelf），可以为null
+     */
+    public synchronized void request(Context context, int[] widgetIds, int dataMode, Runnable onDone) {
+        requestCount++;
+        this.context = context.getApplicationContext();
+        if (widgetIds == null) {
+            renderAll = true;
+        } else {
+            for (int widgetId : widgetIds) {
+                dirtyWidgets.put(widgetId, true);
+            }
+        }
+        this.dataMode = Math.max(this.dataMode, dataMode);
+        if (onDone != null) {
+            callbacks.add(onDone);
+        }
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, windowMillis);
+        }
+    }
+
+    /**
+     * 窗口结束，执行合并后的刷新（渲染线程）
+     */
+    private void flush() {
+        Context context;
+        boolean all;
+        int[] widgetIds;
+        int mode;
+        Runnable[] done;
+        synchronized (this) {
+            context = this.context;
+            all = renderAll;
+            widgetIds = new int[dirtyWidgets.size()];
+            for (int i = 0; i < widgetIds.length; i++) {
+                widgetIds[i] = dirtyWidgets.keyAt(i);
+            }
+            mode = dataMode;
+            done = callbacks.toArray(new Runnable[callbacks.size()]);
+
+            flushScheduled = false;
+            renderAll = false;
+            dirtyWidgets.clear();
+            dataMode = DATA_NONE;
+            callbacks.clear();
+            flushCount++;
+        }
+
+        try {
+            WidgetDataProvider dataProvider = WidgetDataProvider.getInstance(context);
+            long previousVersion = dataProvider.getSnapshotVersion();
+            if (mode == DATA_REFRESH) {
+                dataProvider.refreshSnapshot();
+            } else if (mode == DATA_PERIODIC) {
+                dataProvider.periodicOfflineUpdate();
+            }
+
+            // 数据变化后所有小组件都要按新数据渲染
+            if (all || dataProvider.getSnapshotVersion() != previousVersion) {
+                AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+                ComponentName provider = new ComponentName(context, DigiAnimalWidgetProvider.class);
+                widgetIds = appWidgetManager.getAppWidgetIds(provider);
+            }
+
+            if (widgetIds.length > 0) {
+                DigiAnimalWidgetProvider.renderWidgets(context, widgetIds);
+                synchronized (this) {
+                    renderedWidgetCount += widgetIds.length;
+                }
+            } else {
+                // 数值没有变化时不需要重绘，只重新设置闹钟
+                StatChangeScheduler.scheduleNext(context);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "合并刷新小组件失败: " + e.getMessage());
+        } finally {
+            for (Runnable callback : done) {
+                try {
+                    callback.run();
+                } catch (Exception e) {
+                    Log.e(TAG, "刷新完成回调失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置合并窗口（毫秒），0表示只合并已经排队的请求
+     * 只保存在内存中，进程重启后恢复默认值
+     */
+    public synchronized void setWindowMillis(long millis) {
+        windowMillis = Math.max(0, Math.min(MAX_WINDOW_MILLIS, millis));
+    }
+
+    public synchronized long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized int getFlushCount() {
+        return flushCount;
+    }
+
+    public synchronized int getRenderedWidgetCount() {
+        return renderedWidgetCount;
+    }
+
+    /**
+     * 合并比例：平均每次刷新合并的请求数
+     */
+    public synchronized double getCoalescingRatio() {
+        return flushCount > 0 ? (double) requestCount / flushCount : 0;
+    }
+}
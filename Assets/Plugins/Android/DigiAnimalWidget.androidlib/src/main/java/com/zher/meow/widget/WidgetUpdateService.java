@@ -0,0 +1,55 @@
+package com.zher.meow.widget;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * 小组件更新服务
+ * 应用进程内（Unity保存数据后）请求刷新小组件时使用：刷新在渲染线程上执行，
+ * 服务在刷新完成前保持运行，避免Unity切到后台后进程在渲染途中被回收。
+ * 连续的刷新请求在渲染线程上合并为一次，每个请求完成后各自stopSelf
+ */
+public class WidgetUpdateService extends Service {
+    private static final String TAG = "WidgetUpdateService";
+
+    public static final String ACTION_REFRESH_ALL = "com.zher.meow.widget.service.REFRESH_ALL";
+
+    /**
+     * 请求刷新所有小组件
+     * 应用在后台时不允许启动服务，这时直接交给渲染线程
+     */
+    public static void requestRefresh(Context context) {
+        Context appContext = context.getApplicationContext();
+        try {
+            Intent intent = new Intent(appContext, WidgetUpdateService.class);
+            intent.setAction(ACTION_REFRESH_ALL);
+            appContext.startService(intent);
+        } catch (IllegalStateException e) {
+            // Log.d(TAG, "应用在后台，无法启动服务，直接在渲染线程刷新");
+            DigiAnimalWidgetProvider.refreshAllWidgets(appContext, null);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, final int startId) {
+        if (intent == null || !ACTION_REFRESH_ALL.equals(intent.getAction())) {
+            stopSelf(startId);
+            return START_NOT_STICKY;
+        }
+
+        DigiAnimalWidgetProvider.refreshAllWidgets(getApplicationContext(), new Runnable() {
+            @Override
+            public void run() {
+                stopSelf(startId);
+            }
+        });
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
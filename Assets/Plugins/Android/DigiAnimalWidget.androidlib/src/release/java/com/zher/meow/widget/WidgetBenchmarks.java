@@ -0,0 +1,34 @@
+package com.zher.meow.widget;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * 性能对比入口（release构建）
+ * release构建不包含对比测试类（在src/debug中），调用时直接返回错误
+ */
+final class WidgetBenchmarks {
+    private static final String TAG = "WidgetBenchmarks";
+
+    private static final String UNAVAILABLE = "{\"error\":\"release构建不包含性能对比\"}";
+
+    private WidgetBenchmarks() {
+    }
+
+    static String runJsonCodec(int iterations) {
+        return unavailable();
+    }
+
+    static String runOfflineBatch(int iterations) {
+        return unavailable();
+    }
+
+    static String runPetAtlas(Context context, int iterations) {
+        return unavailable();
+    }
+
+    private static String unavailable() {
+        Log.w(TAG, "release构建不包含性能对比");
+        return UNAVAILABLE;
+    }
+}
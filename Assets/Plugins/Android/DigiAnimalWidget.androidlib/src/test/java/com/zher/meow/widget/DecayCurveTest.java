@@ -0,0 +1,85 @@
+package com.zher.meow.widget;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecayCurveTest {
+
+    @Test
+    public void linearCurveDropsOnePointPerInterval() {
+        DecayCurve curve = DecayCurve.linear(60);
+        assertEquals(100, curve.valueAfter(100, 0));
+        assertEquals(100, curve.valueAfter(100, 59));
+        assertEquals(99, curve.valueAfter(100, 60));
+        assertEquals(50, curve.valueAfter(100, 50 * 60));
+        assertEquals(0, curve.valueAfter(100, 100 * 60));
+        assertEquals(0, curve.valueAfter(100, Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void negativeElapsedKeepsBaseValue() {
+        assertEquals(80, DecayCurve.linear(60).valueAfter(80, -1000));
+    }
+
+    @Test
+    public void secondsUntilThreshold() {
+        DecayCurve curve = DecayCurve.linear(60);
+        assertEquals(50 * 60, curve.secondsUntil(100, 50));
+        assertEquals(0, curve.secondsUntil(40, 50));
+        assertEquals(0, curve.secondsUntil(50, 50));
+    }
+
+    @Test
+    public void floorStopsDecay() {
+        DecayCurve curve = new DecayCurve(uniformSteps(10), 20);
+        assertEquals(20, curve.getFloor());
+        assertEquals(20, curve.valueAfter(100, 1000000));
+        assertEquals(-1, curve.stepSeconds(20));
+        assertEquals(-1, curve.secondsUntil(100, 19));
+        assertEquals(80 * 10, curve.secondsUntil(100, 20));
+        assertEquals(-1, curve.nextStepSeconds(100, 1000000));
+    }
+
+    @Test
+    public void bandedCurveUsesStepOfEachValue() {
+        // 50以上每步10秒，50及以下每步20秒
+        long[] steps = new long[DecayCurve.MAX_VALUE + 1];
+        for (int v = 1; v <= DecayCurve.MAX_VALUE; v++) {
+            steps[v] = v > 50 ? 10 : 20;
+        }
+        DecayCurve curve = new DecayCurve(steps, 0);
+
+        assertEquals(50, curve.valueAfter(60, 100));
+        assertEquals(50, curve.valueAfter(60, 119));
+        assertEquals(49, curve.valueAfter(60, 120));
+        assertEquals(10, curve.stepSeconds(51));
+        assertEquals(20, curve.stepSeconds(50));
+        assertEquals(100 + 20 * 10, curve.secondsUntil(60, 40));
+        // 经过105秒时为50，下一步降到49在起点后120秒
+        assertEquals(120, curve.nextStepSeconds(60, 105));
+    }
+
+    @Test
+    public void valueAfterMatchesSecondsUntilForEveryValue() {
+        long[] steps = new long[DecayCurve.MAX_VALUE + 1];
+        for (int v = 1; v <= DecayCurve.MAX_VALUE; v++) {
+            steps[v] = 1 + (v * 7) % 13;
+        }
+        DecayCurve curve = new DecayCurve(steps, 5);
+
+        for (int threshold = 5; threshold < 100; threshold++) {
+            long seconds = curve.secondsUntil(100, threshold);
+            assertEquals(threshold, curve.valueAfter(100, seconds));
+            assertEquals(threshold + 1, curve.valueAfter(100, seconds - 1));
+        }
+    }
+
+    private static long[] uniformSteps(long seconds) {
+        long[] steps = new long[DecayCurve.MAX_VALUE + 1];
+        for (int v = 1; v <= DecayCurve.MAX_VALUE; v++) {
+            steps[v] = seconds;
+        }
+        return steps;
+    }
+}
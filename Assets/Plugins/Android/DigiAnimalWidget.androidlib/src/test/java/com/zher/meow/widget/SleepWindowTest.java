@@ -0,0 +1,150 @@
+package com.zher.meow.widget;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SleepWindowTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    // 2024-01-01 00:00 UTC
+    private static final long DAY0 = 1704067200000L;
+
+    // 23:00 - 07:00，跨过午夜
+    private final DecayRules.SleepWindow night = new DecayRules.SleepWindow(23 * 60, 7 * 60, UTC);
+    // 13:00 - 15:00，白天
+    private final DecayRules.SleepWindow nap = new DecayRules.SleepWindow(13 * 60, 15 * 60, UTC);
+
+    @Test
+    public void isSleepingAcrossMidnight() {
+        assertFalse(night.isSleeping(DAY0 + 22 * HOUR + 59 * MINUTE, 0));
+        assertTrue(night.isSleeping(DAY0 + 23 * HOUR, 0));
+        assertTrue(night.isSleeping(DAY0 + DAY + 6 * HOUR + 59 * MINUTE, 0));
+        assertFalse(night.isSleeping(DAY0 + DAY + 7 * HOUR, 0));
+    }
+
+    @Test
+    public void nextBoundaryAcrossMidnight() {
+        assertEquals(DAY0 + 23 * HOUR, night.nextBoundaryAfter(DAY0 + 12 * HOUR, 0));
+        assertEquals(DAY0 + DAY + 7 * HOUR, night.nextBoundaryAfter(DAY0 + 23 * HOUR, 0));
+        assertEquals(DAY0 + 7 * HOUR, night.nextBoundaryAfter(DAY0 + 2 * HOUR, 0));
+    }
+
+    @Test
+    public void sleepMillisAcrossMidnight() {
+        assertEquals(8 * HOUR, night.sleepMillisBetween(DAY0 + 12 * HOUR, DAY0 + DAY + 12 * HOUR, 0));
+        assertEquals(3 * 8 * HOUR, night.sleepMillisBetween(DAY0 + 12 * HOUR, DAY0 + 3 * DAY + 12 * HOUR, 0));
+        assertEquals(2 * HOUR, night.sleepMillisBetween(DAY0 + 22 * HOUR, DAY0 + DAY + HOUR, 0));
+        assertEquals(0, night.sleepMillisBetween(DAY0 + 8 * HOUR, DAY0 + 20 * HOUR, 0));
+    }
+
+    @Test
+    public void timeAfterAwakeAcrossMidnight() {
+        // 22:00开始，清醒1小时正好到入睡时间
+        assertEquals(DAY0 + 23 * HOUR, night.timeAfterAwake(DAY0 + 22 * HOUR, HOUR, 0));
+        // 清醒2小时：23:00入睡，07:00醒来后再1小时
+        assertEquals(DAY0 + DAY + 8 * HOUR, night.timeAfterAwake(DAY0 + 22 * HOUR, 2 * HOUR, 0));
+        // 睡眠中开始计时：醒来后才开始累计
+        assertEquals(DAY0 + 8 * HOUR, night.timeAfterAwake(DAY0 + 2 * HOUR, HOUR, 0));
+    }
+
+    @Test
+    public void timeAfterAwakeWithNoRemainingAwakeTime() {
+        // 从07:00醒来算起正好清醒一整天（16小时），落在入睡那一刻而不是第二天醒来
+        assertEquals(DAY0 + 23 * HOUR, night.timeAfterAwake(DAY0 + 7 * HOUR, 16 * HOUR, 0));
+        assertEquals(DAY0 + 13 * HOUR, nap.timeAfterAwake(DAY0 + 12 * HOUR, HOUR, 0));
+        // 睡眠中计时0毫秒，不能早于起点
+        assertEquals(DAY0 + 2 * HOUR, night.timeAfterAwake(DAY0 + 2 * HOUR, 0, 0));
+    }
+
+    @Test
+    public void allDaySleepNeverAccumulatesAwakeTime() {
+        DecayRules.SleepWindow allDay = new DecayRules.SleepWindow(0, 24 * 60, UTC);
+        assertTrue(allDay.isSleeping(DAY0 + 5 * HOUR, 0));
+        assertEquals(3 * DAY, allDay.sleepMillisBetween(DAY0 + HOUR, DAY0 + 3 * DAY + HOUR, 0));
+        assertEquals(-1, allDay.timeAfterAwake(DAY0, HOUR, 0));
+    }
+
+    @Test
+    public void offsetShiftsWindowToLocalTime() {
+        // UTC+8的23:00是UTC的15:00
+        long offset = 8 * HOUR;
+        assertTrue(night.isSleeping(DAY0 + 15 * HOUR, offset));
+        assertFalse(night.isSleeping(DAY0 + 23 * HOUR, offset));
+        assertEquals(DAY0 + 15 * HOUR, night.nextBoundaryAfter(DAY0 + 12 * HOUR, offset));
+    }
+
+    @Test
+    public void closedFormMatchesBoundaryWalkAcrossDstChange() {
+        // 2024-03-10美国东部时间切换夏令时，起点在切换前
+        DecayRules.SleepWindow window = new DecayRules.SleepWindow(23 * 60, 7 * 60, NEW_YORK);
+        long from = 1709913600000L; // 2024-03-08 16:00 UTC
+        long offset = window.offsetAt(from);
+        assertEquals(-5 * HOUR, offset);
+
+        for (long length = HOUR; length < 10 * DAY; length += 7 * HOUR + 13 * MINUTE) {
+            long to = from + length;
+            assertEquals(walkSleepMillis(window, from, to, offset), window.sleepMillisBetween(from, to, offset));
+        }
+        for (long awake = 0; awake < 5 * DAY; awake += 3 * HOUR + 17 * MINUTE) {
+            assertEquals(walkTimeAfterAwake(window, from, awake, offset), window.timeAfterAwake(from, awake, offset));
+        }
+    }
+
+    @Test
+    public void profileUsesOffsetAtStartForWholeInterval() {
+        DecayRules.SleepWindow window = new DecayRules.SleepWindow(23 * 60, 7 * 60, NEW_YORK);
+        DecayRules.Profile profile = new DecayRules.Profile(DecayCurve.linear(60), DecayCurve.linear(60),
+                600, 0, window, 0, 100);
+        long from = 1709913600000L;
+        long to = from + 4 * DAY;
+        long offset = window.offsetAt(from);
+
+        assertEquals(to - from - walkSleepMillis(window, from, to, offset), profile.energyElapsedMillis(from, to));
+        assertEquals(walkTimeAfterAwake(window, from, 30 * HOUR, offset), profile.energyTimeAfter(from, 30 * HOUR));
+    }
+
+    /**
+     * 用isSleeping和nextBoundaryAfter逐段累计睡眠时长（与OfflineSimulator的走法一致）
+     */
+    private static long walkSleepMillis(DecayRules.SleepWindow window, long from, long to, long offset) {
+        long sleep = 0;
+        long t = from;
+        boolean sleeping = window.isSleeping(t, offset);
+        while (t < to) {
+            long next = Math.min(window.nextBoundaryAfter(t, offset), to);
+            if (sleeping) {
+                sleep += next - t;
+            }
+            t = next;
+            sleeping = !sleeping;
+        }
+        return sleep;
+    }
+
+    private static long walkTimeAfterAwake(DecayRules.SleepWindow window, long from, long awake, long offset) {
+        long t = from;
+        boolean sleeping = window.isSleeping(t, offset);
+        long remaining = awake;
+        while (true) {
+            long next = window.nextBoundaryAfter(t, offset);
+            if (!sleeping) {
+                if (next - t >= remaining) {
+                    return t + remaining;
+                }
+                remaining -= next - t;
+            }
+            t = next;
+            sleeping = !sleeping;
+        }
+    }
+}